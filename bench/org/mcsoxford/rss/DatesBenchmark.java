@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of the RFC 822 date parsing of &lt;pubDate&gt; elements. The
+ * {@link SimpleDateFormat} benchmark is the baseline which {@link Dates}
+ * replaced. See {@link RSSParserBenchmark} for how to run it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class DatesBenchmark {
+
+  private static final int DATES = 1024;
+
+  private String[] dates;
+  private SimpleDateFormat format;
+  private int next;
+
+  @Setup
+  public void setUp() {
+    dates = SyntheticFeeds.pubDates(DATES);
+    format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.ENGLISH);
+  }
+
+  @Benchmark
+  public long parseRfc822Millis() {
+    return Dates.parseRfc822Millis(nextDate());
+  }
+
+  @Benchmark
+  public long simpleDateFormat() throws ParseException {
+    return format.parse(nextDate()).getTime();
+  }
+
+  /**
+   * Cycles through the dates, so that neither parser sees a constant input.
+   */
+  private String nextDate() {
+    next = (next + 1) & (DATES - 1);
+    return dates[next];
+  }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * JMH benchmark of reading the attributes of a &lt;media:thumbnail&gt;
+ * element, which the SAX parser does twice for every BBC News item. See
+ * {@link RSSParserBenchmark} for how to run it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class MediaAttributesBenchmark {
+
+  private AttributesImpl thumbnail;
+
+  @Setup
+  public void setUp() {
+    thumbnail = new AttributesImpl();
+    thumbnail.addAttribute("", "", "width", "CDATA", "144");
+    thumbnail.addAttribute("", "", "height", "CDATA", "81");
+    thumbnail.addAttribute("", "", "url", "CDATA",
+        "http://news.bbcimg.co.uk/media/images/55893000/jpg/_55893474_012345.jpg");
+  }
+
+  @Benchmark
+  public void thumbnail(Blackhole blackhole) {
+    blackhole.consume(MediaAttributes.stringValue(thumbnail, "url"));
+    blackhole.consume(MediaAttributes.intValue(thumbnail, "height", -1));
+    blackhole.consume(MediaAttributes.intValue(thumbnail, "width", -1));
+  }
+
+  @Benchmark
+  public int missingAttribute() {
+    return MediaAttributes.intValue(thumbnail, "fileSize", -1);
+  }
+
+}
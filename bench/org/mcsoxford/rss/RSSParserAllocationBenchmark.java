@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the number of bytes which the RSS parsers allocate per parsed RSS
+ * item. Each invocation parses a feed of {@link #ITEMS} items and counts as
+ * that many operations, so the {@code gc.alloc.rate.norm} column of the GC
+ * profiler is the number of bytes per RSS item.
+ * 
+ * <pre>
+ * java -jar bench/target/jmh-benchmarks.jar RSSParserAllocationBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(RSSParserAllocationBenchmark.ITEMS)
+public class RSSParserAllocationBenchmark {
+
+  static final int ITEMS = 500;
+  private static final int DESCRIPTION_LENGTH = 100;
+
+  @Param({ "sax", "pull", "fast" })
+  public String parser;
+
+  private RSSParserSPI spi;
+  private byte[] feed;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    spi = RSSParserBenchmark.parser(parser, new RSSConfig());
+    feed = SyntheticFeeds.feed(ITEMS, DESCRIPTION_LENGTH);
+
+    final int parsed = spi.parse(new ByteArrayInputStream(feed)).getItems().size();
+    if (parsed != ITEMS) {
+      throw new IllegalStateException("Expected " + ITEMS + " items but " + parser
+          + " parsed " + parsed + ".");
+    }
+  }
+
+  @Benchmark
+  public RSSFeed parse() {
+    return spi.parse(new ByteArrayInputStream(feed));
+  }
+
+}
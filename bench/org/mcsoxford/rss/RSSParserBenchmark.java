@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of every {@link RSSParserSPI} implementation on synthetic BBC
+ * News feeds. Each parameter combination reports the throughput and, in
+ * sample mode, the latency percentiles of a full parse. The benchmarks are
+ * built by {@code bench/pom.xml} together with the RSS library and run on a
+ * desktop JVM; they are not part of the Android application.
+ * 
+ * <pre>
+ * mvn -f bench/pom.xml package
+ * java -jar bench/target/jmh-benchmarks.jar RSSParserBenchmark -prof gc
+ * </pre>
+ * 
+ * The {@code gc.alloc.rate.norm} column of the GC profiler is the number of
+ * bytes allocated per parse; divide it by {@code items} for bytes per RSS
+ * item.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class RSSParserBenchmark {
+
+  @Param({ "10", "100", "1000", "10000" })
+  public int items;
+
+  /**
+   * Approximate number of characters of each item description. BBC News
+   * summaries are short, but other feeds embed whole articles.
+   */
+  @Param({ "100", "2000" })
+  public int descriptionLength;
+
+  @Param({ "sax", "pull", "fast" })
+  public String parser;
+
+  private RSSParserSPI spi;
+  private byte[] feed;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    // the largest feeds exceed the default limits, which suit BBC News feeds
+    final RSSConfig config = new RSSConfig((byte) 3, (byte) 2, Integer.MAX_VALUE,
+        RSSConfig.DEFAULT_MAX_TEXT_LENGTH, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    spi = parser(parser, config);
+    feed = SyntheticFeeds.feed(items, descriptionLength);
+
+    final int parsed = spi.parse(new ByteArrayInputStream(feed)).getItems().size();
+    if (parsed != items) {
+      throw new IllegalStateException("Expected " + items + " items but " + parser
+          + " parsed " + parsed + ".");
+    }
+  }
+
+  @Benchmark
+  public RSSFeed parse() {
+    return spi.parse(new ByteArrayInputStream(feed));
+  }
+
+  static RSSParserSPI parser(String name, RSSConfig config) {
+    if ("sax".equals(name)) {
+      return new RSSParser(config);
+    } else if ("pull".equals(name)) {
+      return new RSSPullParser(config);
+    } else if ("fast".equals(name)) {
+      return new RSSFastParser(config);
+    }
+    throw new IllegalArgumentException("Unknown RSS parser: " + name);
+  }
+
+}
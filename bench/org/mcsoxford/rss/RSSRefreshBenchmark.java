@@ -0,0 +1,171 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mcsoxford.rss;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmark of a whole feed refresh, as the application performs it with
+ * {@link RSSReader#loadAll(List, java.util.concurrent.Executor)}, against a
+ * {@link ReplayHttpClient} which simulates the latency and bandwidth of a
+ * mobile network. The feeds are synthetic BBC News feeds which are written to
+ * a temporary fixtures directory, in plain and gzip form; point
+ * {@code -Dfixtures=DIR} at recorded feeds to replay those instead.
+ * 
+ * <pre>
+ * java -jar bench/target/jmh-benchmarks.jar RSSRefreshBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RSSRefreshBenchmark {
+
+  private static final String HOST = "feeds.bbci.co.uk";
+
+  /**
+   * Number of feeds which are refreshed, one for each enabled category.
+   */
+  @Param({ "1", "10" })
+  public int feeds;
+
+  /**
+   * Round trip time of each request in milliseconds.
+   */
+  @Param({ "0", "100" })
+  public int latency;
+
+  /**
+   * Bandwidth of each response in bytes per second, or 0 for no limit.
+   */
+  @Param({ "0", "256000" })
+  public int bandwidth;
+
+  @Param({ "1", "4" })
+  public int threads;
+
+  private File fixtures;
+  private boolean temporary;
+  private List<String> uris;
+  private ReplayHttpClient client;
+  private RSSReader reader;
+  private ExecutorService executor;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException, InterruptedException {
+    uris = new ArrayList<String>(feeds);
+    for (int i = 0; i < feeds; i++) {
+      uris.add("http://" + HOST + "/news/category" + i + "/rss.xml");
+    }
+
+    final String recorded = System.getProperty("fixtures");
+    if (recorded != null) {
+      fixtures = new File(recorded);
+    } else {
+      fixtures = File.createTempFile("fixtures", "");
+      fixtures.delete();
+      temporary = true;
+    }
+
+    client = new ReplayHttpClient(fixtures);
+    if (temporary) {
+      final byte[] feed = SyntheticFeeds.feed(60, 200);
+      for (String uri : uris) {
+        write(client.fixture(java.net.URI.create(uri)), feed);
+      }
+    }
+    client.setLatency(latency, TimeUnit.MILLISECONDS);
+    client.setBandwidth(bandwidth);
+
+    reader = new RSSReader(client, new RSSPullParser());
+    executor = Executors.newFixedThreadPool(threads);
+
+    for (RSSLoadResult result : reader.loadAll(uris, executor)) {
+      if (!result.isSuccessful()) {
+        throw new IllegalStateException("Could not replay " + result);
+      }
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    executor.shutdown();
+    reader.close();
+    if (temporary) {
+      delete(fixtures);
+    }
+  }
+
+  @Benchmark
+  public List<RSSLoadResult> refresh() throws InterruptedException {
+    return reader.loadAll(uris, executor);
+  }
+
+  private static void write(File file, byte[] content) throws IOException {
+    file.getParentFile().mkdirs();
+    OutputStream output = new FileOutputStream(file);
+    try {
+      output.write(content);
+    } finally {
+      output.close();
+    }
+
+    // compressed copy for clients which accept gzip
+    output = new GZIPOutputStream(new FileOutputStream(file.getPath() + ".gz"));
+    try {
+      output.write(content);
+    } finally {
+      output.close();
+    }
+  }
+
+  private static void delete(File file) {
+    final File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+}
@@ -0,0 +1,396 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mcsoxford.rss;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionRequest;
+import org.apache.http.conn.ManagedClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.cookie.DateUtils;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * In-process stand-in for the BBC servers which replays recorded feeds,
+ * article pages and thumbnails from a fixtures directory. Since
+ * {@link RSSReader} and the application's transport take any
+ * {@link HttpClient}, the whole refresh can run offline and reproducibly
+ * against it.
+ * <p>
+ * The response body of {@code http://host/path?query} is the file
+ * {@code fixtures/host/path_query}; a path which ends with a slash is stored
+ * as {@code index}. If {@code file.gz} exists, it is sent to clients which
+ * accept gzip. Responses carry an ETag and Last-Modified date derived from
+ * the file, so conditional requests are answered with 304 Not Modified.
+ * <p>
+ * Latency, bandwidth and a rate of injected errors can be configured; errors
+ * are drawn from a seeded random sequence, so a run can be repeated exactly.
+ * When a recording client is given, fixtures which do not exist yet are
+ * fetched with it and saved.
+ */
+public final class ReplayHttpClient implements HttpClient {
+
+  private final File fixtures;
+  private final HttpClient recorder;
+  private final Random random;
+  private final HttpParams params = new BasicHttpParams();
+  private final AtomicInteger requests = new AtomicInteger();
+
+  private volatile long latency;
+  private volatile int bytesPerSecond;
+  private volatile double errorRate;
+
+  /**
+   * Instantiate a client which replays the fixtures and fails with a 404 for
+   * anything which was not recorded.
+   */
+  public ReplayHttpClient(File fixtures) {
+    this(fixtures, null, 0);
+  }
+
+  /**
+   * Instantiate a client which replays the fixtures.
+   * 
+   * @param fixtures directory of the recorded responses
+   * @param recorder client which fetches and saves missing fixtures, or
+   *          {@code null} to replay only
+   * @param seed seed of the injected errors
+   */
+  public ReplayHttpClient(File fixtures, HttpClient recorder, long seed) {
+    this.fixtures = fixtures;
+    this.recorder = recorder;
+    this.random = new Random(seed);
+  }
+
+  /**
+   * Delays the response head of every request, like the round trip of a
+   * mobile network.
+   */
+  public void setLatency(long latency, TimeUnit unit) {
+    this.latency = unit.toMillis(latency);
+  }
+
+  /**
+   * Limits the rate at which each response body is read, or {@code 0} for no
+   * limit.
+   */
+  public void setBandwidth(int bytesPerSecond) {
+    this.bytesPerSecond = bytesPerSecond;
+  }
+
+  /**
+   * Sets the fraction of requests which fail. Half of the failures are
+   * connection errors and half are 503 Service Unavailable responses.
+   */
+  public void setErrorRate(double errorRate) {
+    this.errorRate = errorRate;
+  }
+
+  /**
+   * Returns the number of requests which have been executed.
+   */
+  public int getRequestCount() {
+    return requests.get();
+  }
+
+  /**
+   * Returns the fixture file of the specified URI.
+   */
+  public File fixture(URI uri) {
+    String path = uri.getPath();
+    if (path == null || path.length() == 0 || path.endsWith("/")) {
+      path = (path == null ? "/" : path) + "index";
+    }
+    if (uri.getQuery() != null) {
+      path += "_" + uri.getQuery().replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+    return new File(new File(fixtures, uri.getHost()), path.replace("..", "_"));
+  }
+
+  public HttpResponse execute(HttpUriRequest request, HttpContext context)
+      throws IOException {
+    requests.incrementAndGet();
+    pause(latency);
+    if (isAborted(request)) {
+      throw new IOException("Request aborted: " + request.getURI());
+    }
+
+    final boolean fail;
+    final boolean reset;
+    synchronized (random) {
+      fail = random.nextDouble() < errorRate;
+      reset = random.nextBoolean();
+    }
+    if (fail && reset) {
+      throw new IOException("Injected connection reset: " + request.getURI());
+    } else if (fail) {
+      return response(HttpStatus.SC_SERVICE_UNAVAILABLE, "Service Unavailable");
+    }
+
+    final File file = fixture(request.getURI());
+    if (!file.isFile() && (recorder == null || !record(request.getURI(), file))) {
+      return response(HttpStatus.SC_NOT_FOUND, "Not Found");
+    }
+
+    final String etag = "\"" + Long.toHexString(file.lastModified()) + "-"
+        + Long.toHexString(file.length()) + "\"";
+    final Header ifNoneMatch = request.getFirstHeader("If-None-Match");
+    if (ifNoneMatch != null && etag.equals(ifNoneMatch.getValue())) {
+      final HttpResponse response = response(HttpStatus.SC_NOT_MODIFIED, "Not Modified");
+      response.setHeader("ETag", etag);
+      return response;
+    }
+
+    final HttpResponse response = response(HttpStatus.SC_OK, "OK");
+    response.setHeader("ETag", etag);
+    response.setHeader("Last-Modified", DateUtils.formatDate(new Date(file.lastModified())));
+
+    File body = file;
+    final File gzip = new File(file.getPath() + ".gz");
+    final Header accept = request.getFirstHeader("Accept-Encoding");
+    if (gzip.isFile() && accept != null && accept.getValue().indexOf("gzip") >= 0) {
+      body = gzip;
+      response.setHeader("Content-Encoding", "gzip");
+    }
+
+    final InputStreamEntity entity = new InputStreamEntity(new Throttled(
+        new FileInputStream(body), request), body.length());
+    final Header encoding = response.getFirstHeader("Content-Encoding");
+    if (encoding != null) {
+      entity.setContentEncoding(encoding);
+    }
+    response.setEntity(entity);
+    return response;
+  }
+
+  public HttpResponse execute(HttpUriRequest request) throws IOException {
+    return execute(request, (HttpContext) null);
+  }
+
+  public HttpResponse execute(HttpHost target, HttpRequest request,
+      HttpContext context) throws IOException {
+    if (!(request instanceof HttpUriRequest)) {
+      throw new IllegalArgumentException("Only URI requests are replayed.");
+    }
+    return execute((HttpUriRequest) request, context);
+  }
+
+  public HttpResponse execute(HttpHost target, HttpRequest request)
+      throws IOException {
+    return execute(target, request, (HttpContext) null);
+  }
+
+  public <T> T execute(HttpUriRequest request,
+      ResponseHandler<? extends T> handler, HttpContext context)
+      throws IOException {
+    final HttpResponse response = execute(request, context);
+    try {
+      return handler.handleResponse(response);
+    } finally {
+      consume(response.getEntity());
+    }
+  }
+
+  public <T> T execute(HttpUriRequest request,
+      ResponseHandler<? extends T> handler) throws IOException {
+    return execute(request, handler, (HttpContext) null);
+  }
+
+  public <T> T execute(HttpHost target, HttpRequest request,
+      ResponseHandler<? extends T> handler, HttpContext context)
+      throws IOException {
+    final HttpResponse response = execute(target, request, context);
+    try {
+      return handler.handleResponse(response);
+    } finally {
+      consume(response.getEntity());
+    }
+  }
+
+  public <T> T execute(HttpHost target, HttpRequest request,
+      ResponseHandler<? extends T> handler) throws IOException {
+    return execute(target, request, handler, (HttpContext) null);
+  }
+
+  public HttpParams getParams() {
+    return params;
+  }
+
+  /**
+   * Returns a connection manager which holds no connections, so that
+   * {@link RSSReader#close()} can shut it down.
+   */
+  public ClientConnectionManager getConnectionManager() {
+    return NO_CONNECTIONS;
+  }
+
+  /**
+   * Fetches a missing fixture with the recording client.
+   * 
+   * @return {@code true} if the fixture was saved
+   */
+  private boolean record(URI uri, File file) throws IOException {
+    final HttpResponse response = recorder.execute(new HttpGet(uri));
+    final HttpEntity entity = response.getEntity();
+    if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK || entity == null) {
+      consume(entity);
+      return false;
+    }
+
+    file.getParentFile().mkdirs();
+    final InputStream input = entity.getContent();
+    final OutputStream output = new FileOutputStream(file);
+    try {
+      final byte[] buffer = new byte[8192];
+      int read;
+      while ((read = input.read(buffer)) != -1) {
+        output.write(buffer, 0, read);
+      }
+    } finally {
+      output.close();
+      input.close();
+    }
+    return true;
+  }
+
+  private static HttpResponse response(int status, String reason) {
+    return new BasicHttpResponse(HttpVersion.HTTP_1_1, status, reason);
+  }
+
+  private static boolean isAborted(HttpUriRequest request) {
+    return request instanceof HttpRequestBase && ((HttpRequestBase) request).isAborted();
+  }
+
+  private static void consume(HttpEntity entity) throws IOException {
+    if (entity != null) {
+      final InputStream content = entity.getContent();
+      if (content != null) {
+        content.close();
+      }
+    }
+  }
+
+  private static void pause(long millis) throws InterruptedIOException {
+    if (millis <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while replaying latency.");
+    }
+  }
+
+  /**
+   * Paces a response body to the configured bandwidth and fails once its
+   * request has been aborted, like a socket which was closed underneath the
+   * reader.
+   */
+  private final class Throttled extends FilterInputStream {
+
+    private final HttpUriRequest request;
+    private final long start = System.currentTimeMillis();
+    private long count;
+
+    Throttled(InputStream in, HttpUriRequest request) {
+      super(in);
+      this.request = request;
+    }
+
+    @Override
+    public int read() throws IOException {
+      final byte[] one = new byte[1];
+      return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (isAborted(request)) {
+        throw new IOException("Request aborted: " + request.getURI());
+      }
+
+      final int rate = bytesPerSecond;
+      if (rate > 0) {
+        // deliver about a tenth of a second of data at a time
+        len = Math.min(len, Math.max(1, rate / 10));
+      }
+      final int read = super.read(b, off, len);
+      if (read > 0 && rate > 0) {
+        count += read;
+        pause(count * 1000 / rate - (System.currentTimeMillis() - start));
+      }
+      return read;
+    }
+
+  }
+
+  private static final ClientConnectionManager NO_CONNECTIONS = new ClientConnectionManager() {
+
+    public SchemeRegistry getSchemeRegistry() {
+      return new SchemeRegistry();
+    }
+
+    public ClientConnectionRequest requestConnection(HttpRoute route, Object state) {
+      throw new UnsupportedOperationException("Responses are replayed without connections.");
+    }
+
+    public void releaseConnection(ManagedClientConnection conn, long validDuration,
+        TimeUnit timeUnit) {
+    }
+
+    public void closeIdleConnections(long idletime, TimeUnit tunit) {
+    }
+
+    public void closeExpiredConnections() {
+    }
+
+    public void shutdown() {
+    }
+
+  };
+
+}
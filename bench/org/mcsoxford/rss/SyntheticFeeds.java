@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Generates RSS 2.0 feeds which are shaped like the BBC News feeds for the
+ * benchmarks. The output only depends on the arguments, so runs with the same
+ * parameters parse the same bytes.
+ */
+final class SyntheticFeeds {
+
+  private static final String[] DAYS = { "Thu", "Fri", "Sat", "Sun", "Mon", "Tue", "Wed" };
+  private static final String[] MONTHS = { "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul",
+      "Aug", "Sep", "Oct", "Nov", "Dec" };
+
+  private static final String WORDS = "The summary of the story is a sentence or two long"
+      + " and is shown below the headline &amp; it may quote &quot;people&quot; at length. ";
+
+  /* Hide constructor */
+  private SyntheticFeeds() {}
+
+  /**
+   * Returns the UTF-8 bytes of a feed with the specified number of items.
+   * 
+   * @param items number of &lt;item&gt; elements
+   * @param descriptionLength approximate number of characters of each item
+   *          description
+   */
+  static byte[] feed(int items, int descriptionLength) {
+    final StringBuilder xml = new StringBuilder(1024 + items * (600 + descriptionLength));
+    xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    xml.append("<rss xmlns:media=\"http://search.yahoo.com/mrss/\" version=\"2.0\">\n<channel>\n");
+    xml.append("<title>BBC News - Home</title>\n<link>http://www.bbc.co.uk/news/</link>\n");
+    xml.append("<description>The latest stories from the Home section of the BBC News web site.</description>\n");
+    xml.append("<pubDate>Mon, 03 Oct 2011 11:21:11 GMT</pubDate>\n");
+
+    for (int i = 0; i < items; i++) {
+      xml.append("<item>\n<title>Story number ").append(i).append(" &amp; its headline</title>\n");
+      xml.append("<description>");
+      for (int length = 0; length < descriptionLength; length += WORDS.length()) {
+        xml.append(WORDS, 0, Math.min(WORDS.length(), descriptionLength - length));
+      }
+      xml.append("</description>\n");
+      xml.append("<link>http://www.bbc.co.uk/news/world-").append(1000000 + i).append("</link>\n");
+      xml.append("<guid isPermaLink=\"false\">http://www.bbc.co.uk/news/world-").append(1000000 + i).append("</guid>\n");
+      appendPubDate(xml, 1317600000L + i * 977L);
+      xml.append("<media:thumbnail width=\"66\" height=\"49\" url=\"http://news.bbcimg.co.uk/media/images/")
+          .append(i).append("/jpg/_66.jpg\"/>\n");
+      xml.append("<media:thumbnail width=\"144\" height=\"81\" url=\"http://news.bbcimg.co.uk/media/images/")
+          .append(i).append("/jpg/_144.jpg\"/>\n");
+      xml.append("</item>\n");
+    }
+
+    xml.append("</channel>\n</rss>\n");
+    try {
+      return xml.toString().getBytes("UTF-8");
+    } catch (java.io.UnsupportedEncodingException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Returns RFC 822 dates which are spread over several years.
+   */
+  static String[] pubDates(int count) {
+    final String[] dates = new String[count];
+    for (int i = 0; i < count; i++) {
+      final StringBuilder date = new StringBuilder(32);
+      appendDate(date, 1217600000L + i * 86413L);
+      dates[i] = date.toString();
+    }
+    return dates;
+  }
+
+  private static void appendPubDate(StringBuilder xml, long seconds) {
+    xml.append("<pubDate>");
+    appendDate(xml, seconds);
+    xml.append("</pubDate>\n");
+  }
+
+  private static void appendDate(StringBuilder xml, long seconds) {
+    final java.util.Calendar calendar = java.util.Calendar.getInstance(java.util.TimeZone.getTimeZone("GMT"));
+    calendar.setTimeInMillis(seconds * 1000);
+
+    xml.append(DAYS[(int) ((seconds / 86400) % 7)]).append(", ");
+    appendTwoDigits(xml, calendar.get(java.util.Calendar.DAY_OF_MONTH));
+    xml.append(' ').append(MONTHS[calendar.get(java.util.Calendar.MONTH)]).append(' ');
+    xml.append(calendar.get(java.util.Calendar.YEAR)).append(' ');
+    appendTwoDigits(xml, calendar.get(java.util.Calendar.HOUR_OF_DAY));
+    xml.append(':');
+    appendTwoDigits(xml, calendar.get(java.util.Calendar.MINUTE));
+    xml.append(':');
+    appendTwoDigits(xml, calendar.get(java.util.Calendar.SECOND));
+    xml.append(" GMT");
+  }
+
+  private static void appendTwoDigits(StringBuilder xml, int value) {
+    if (value < 10) {
+      xml.append('0');
+    }
+    xml.append(value);
+  }
+
+}
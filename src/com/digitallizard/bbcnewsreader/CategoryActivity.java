@@ -38,6 +38,7 @@ public class CategoryActivity extends Activity {
 	ArrayList<NewsItem> items;
 	Messenger resourceMessenger;
 	boolean resourceServiceBound;
+	int lastFirstVisible; //the first item on the screen when the service was last told
 
 	
 	/* service configuration */
@@ -66,6 +67,8 @@ public class CategoryActivity extends Activity {
 	        //try and tell the service that we have connected
 	        //this means it will keep talking to us
 	        sendMessageToService(ResourceService.MSG_REGISTER_CLIENT, null);
+	        //load the items on the screen first
+	        reportVisibleItems(listView.getFirstVisiblePosition(), listView.getLastVisiblePosition());
 	    }
 
 	    public void onServiceDisconnected(ComponentName className) {
@@ -117,6 +120,30 @@ public class CategoryActivity extends Activity {
     	sendMessageToService(what, null);
     }
     
+    void reportVisibleItems(int firstVisible, int lastVisible){
+    	//the messenger only exists once the service has connected
+    	if(resourceMessenger == null || lastVisible < firstVisible){
+    		return;
+    	}
+    	lastFirstVisible = firstVisible;
+    	int count = listView.getAdapter().getCount();
+    	lastVisible = Math.min(lastVisible, count - 1);
+    	//the next screen of items is the one about to become visible
+    	int lastUpcoming = Math.min(count - 1, lastVisible + (lastVisible - firstVisible + 1));
+    	int[] visible = new int[lastVisible - firstVisible + 1];
+    	for(int i = 0; i < visible.length; i++){
+    		visible[i] = ((NewsItem)listView.getAdapter().getItem(firstVisible + i)).getId();
+    	}
+    	int[] upcoming = new int[Math.max(0, lastUpcoming - lastVisible)];
+    	for(int i = 0; i < upcoming.length; i++){
+    		upcoming[i] = ((NewsItem)listView.getAdapter().getItem(lastVisible + 1 + i)).getId();
+    	}
+    	Bundle bundle = new Bundle();
+    	bundle.putIntArray(ResourceService.KEY_VISIBLE_ITEMS, visible);
+    	bundle.putIntArray(ResourceService.KEY_UPCOMING_ITEMS, upcoming);
+    	sendMessageToService(ResourceService.MSG_VISIBLE_ITEMS, bundle);
+    }
+    
     void thumbLoadComplete(int id){
     	//load the thumbnail
     	byte[] thumbnailBytes = database.getThumbnail(id);
@@ -148,6 +175,7 @@ public class CategoryActivity extends Activity {
 		this.setContentView(R.layout.category); //load the layout
 				
 		listView = (ListView)this.findViewById(R.id.categoryListView);
+		lastFirstVisible = -1; //nothing has been reported yet
 		
 		//set the title of this category
 		String title = this.getIntent().getStringExtra("title"); //load title from the intent
@@ -182,6 +210,7 @@ public class CategoryActivity extends Activity {
 					//check to see if all the visible items have images
 					int firstVisible = list.getFirstVisiblePosition();
 					int lastVisible = list.getLastVisiblePosition();
+					reportVisibleItems(firstVisible, lastVisible);
 					for(int i = firstVisible; i <= lastVisible; i++){
 						NewsItem item = (NewsItem)list.getAdapter().getItem(i);
 						//if this item doesn't have a thumbnail
@@ -196,7 +225,10 @@ public class CategoryActivity extends Activity {
 			}
 			
 			public void onScroll(AbsListView list, int firstVisible, int visibleItems, int totalItems) {
-				//do nothing
+				//keep the service ahead of the scroll, but only when a new item comes onto the screen
+				if(firstVisible != lastFirstVisible){
+					reportVisibleItems(firstVisible, firstVisible + visibleItems - 1);
+				}
 			}
 		});
 	}
@@ -7,24 +7,39 @@
 package com.digitallizard.bbcnewsreader;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.mcsoxford.rss.RSSConfig;
+import org.mcsoxford.rss.RSSDiagnostics;
 import org.mcsoxford.rss.RSSException;
-import org.mcsoxford.rss.RSSFault;
-import org.mcsoxford.rss.RSSFeed;
+import org.mcsoxford.rss.RSSFastParser;
 import org.mcsoxford.rss.RSSItem;
+import org.mcsoxford.rss.RSSItemListener;
+import org.mcsoxford.rss.RSSLoadResult;
 import org.mcsoxford.rss.RSSReader;
+import org.mcsoxford.rss.RSSTransferStats;
+import org.mcsoxford.rss.RSSValidatorStore;
+
+import com.digitallizard.bbcnewsreader.resource.web.HttpTransport;
+
+import android.util.Log;
 
 public class RSSManager implements Runnable {
 	/* constants */
-	
+	//skip items with bad content instead of failing the whole feed
+	static final RSSConfig RSS_CONFIG = new RSSConfig((byte)3, (byte)2, RSSConfig.DEFAULT_MAX_ITEMS, RSSConfig.DEFAULT_MAX_TEXT_LENGTH,
+			RSSConfig.DEFAULT_MAX_DOCUMENT_BYTES, RSSConfig.DEFAULT_MAX_ENTITY_EXPANSIONS, true);
+	static final int MAX_PARALLEL_FEEDS = 4; //the number of feeds that are downloaded at once
 	
 	/* variables */
 	ResourceInterface resourceInterface;
+	RSSValidatorStore validatorStore;
 	Thread thread;
 	String[] names;
 	String[] urls;
-	ArrayList<RSSFeed> feeds;
 	RSSReader reader;
 	boolean isLoading;
 	volatile boolean noError;
@@ -37,8 +52,35 @@ public class RSSManager implements Runnable {
 		return isLoading;
 	}
 	
-	public RSSManager(ResourceInterface service){
+	/**
+	 * Passes the items of one category to the service as they are parsed
+	 */
+	class CategoryItemListener implements RSSItemListener {
+		String category;
+		int priority; //the position of the next item in the feed
+		
+		CategoryItemListener(String category){
+			this.category = category;
+			this.priority = 0;
+		}
+		
+		public boolean itemParsed(RSSItem item){
+			//stop parsing if we have been cancelled
+			if(!isLoading()){
+				return false;
+			}
+			resourceInterface.categoryRssItemLoaded(item, category, priority);
+			priority++;
+			return true;
+		}
+	}
+	
+	public RSSManager(ResourceInterface service, RSSValidatorStore validatorStore, HttpTransport transport){
 		this.resourceInterface = service;
+		this.validatorStore = validatorStore;
+		//the reader uses the service's connections, the parser's buffers are reused between feeds
+		//feeds that haven't changed since the last load are not downloaded again
+		this.reader = new RSSReader(transport.getHttpClient(), new RSSFastParser(RSS_CONFIG), validatorStore);
 	}
 	
 	public void load(String[] names, String[] urls){
@@ -46,7 +88,6 @@ public class RSSManager implements Runnable {
 		if(!isLoading()){
 			this.names = names; //store the names
 			this.urls = urls; //store the URLS
-			feeds = new ArrayList<RSSFeed>();
 			thread = new Thread(this);
 			setIsLoading(true);
 			noError = true;
@@ -60,36 +101,65 @@ public class RSSManager implements Runnable {
 	}
 	
 	public void run(){
-		//create a reader
-		reader = new RSSReader();
-		//load in the feeds
-		for(int i = 0; i < urls.length; i++){
-			//check we haven't been cancelled
-			if(isLoading()){
-				RSSFeed feed;
-				try {
-					feed = reader.load(urls[i]);
-					feeds.add(feed);
-					List<RSSItem> items = (List<RSSItem>) feed.getItems();
-					//loop through the items and send them to the parent service
-					resourceInterface.categoryRssLoaded((RSSItem[])items.toArray(new RSSItem[items.size()]), names[i]);
-				} catch (RSSException e) {
-					//FIXME not a good way to handle these errors, will be fixed by new RSSManager
-					//report the error to the resource service
-					resourceInterface.reportError(ReaderActivity.ERROR_TYPE_GENERAL, "The rss feed could not be read.", e.toString());
-					//give up loading
-					stopLoading();
-				} catch (RSSFault e){
-					//FIXME not a good way to handle these errors, will be fixed by new RSSManager
-					//report the error to the resource service
-					resourceInterface.reportError(ReaderActivity.ERROR_TYPE_INTERNET, "The rss feed could not be read. Check your internet connection.", e.toString());
-					//give up loading
-					stopLoading();
+		//the items of each feed are sent to the parent service as they are parsed
+		List<CategoryItemListener> listeners = new ArrayList<CategoryItemListener>(names.length);
+		for(int i = 0; i < names.length; i++){
+			listeners.add(new CategoryItemListener(names[i]));
+		}
+		//load the feeds in parallel, the round trips dominate on mobile networks
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(MAX_PARALLEL_FEEDS, urls.length)));
+		try {
+			List<RSSLoadResult> results = reader.loadAll(Arrays.asList(urls), listeners, executor);
+			boolean anyLoaded = false;
+			boolean errorReported = false;
+			for(int i = 0; i < results.size(); i++){
+				RSSLoadResult result = results.get(i);
+				if(result.isSuccessful()){
+					anyLoaded = true;
+					if(Log.isLoggable("BBC News Reader", Log.DEBUG)){
+						RSSTransferStats stats = result.getFeed().getTransferStats();
+						Log.d("BBC News Reader", "Downloaded " + names[i] + ": " + stats);
+					}
+					RSSDiagnostics diagnostics = result.getFeed().getDiagnostics();
+					if(diagnostics.hasProblems()){
+						Log.w("BBC News Reader", "Skipped " + diagnostics.getSkippedItems() + " bad items in " + names[i] + ":\n" + diagnostics);
+					}
+					//only report the category if we weren't cancelled part way through
+					if(isLoading()){
+						resourceInterface.categoryRssLoaded(names[i]);
+					}
+				}
+				else if(result.isNotModified()){
+					//the items in the database are still current
+					anyLoaded = true;
 				}
+				else if(isLoading() && !errorReported){
+					//the other feeds are still used, so only tell the user once
+					reportError(result.getException());
+					errorReported = true;
+				}
+			}
+			//there is nothing to download if every feed failed
+			if(!anyLoaded){
+				noError = false;
 			}
+		} catch (InterruptedException e) {
+			stopLoading();
+		} finally {
+			executor.shutdown();
 		}
 		//report that the load is complete
 		resourceInterface.rssLoadComplete(noError);
 		setIsLoading(false); //we are not longer loading
 	}
+	
+	void reportError(Exception e){
+		//report the error to the resource service
+		if(e instanceof RSSException){
+			resourceInterface.reportError(ReaderActivity.ERROR_TYPE_GENERAL, "The rss feed could not be read.", e.toString());
+		}
+		else{
+			resourceInterface.reportError(ReaderActivity.ERROR_TYPE_INTERNET, "The rss feed could not be read. Check your internet connection.", e.toString());
+		}
+	}
 }
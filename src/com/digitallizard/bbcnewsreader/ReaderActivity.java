@@ -34,7 +34,9 @@ import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.View.OnTouchListener;
 import android.view.WindowManager;
 import android.widget.Button;
 import android.widget.LinearLayout;
@@ -55,6 +57,7 @@ public class ReaderActivity extends Activity {
 	static final int CATEGORY_ROW_LENGTH = 4;
 	static final int DIALOG_ERROR = 0;
 	static final int NEWS_ITEM_DP_WIDTH = 100; //FIXME item width shouldn't be predefined
+	static final int VISIBLE_ITEMS_DELAY = 500; //milliseconds to let a fling settle before reporting what is on the screen
 	
 	public static final String PREFS_FILE_NAME = "com.digitallizard.bbcnewsreader_preferences";
 	public static final int DEFAULT_ITEM_LOAD_LIMIT = 4;
@@ -96,6 +99,13 @@ public class ReaderActivity extends Activity {
 	HashMap<String, Integer> itemIds;
 	long lastLoadTime;
 
+	//reports the items on the screen to the service
+	final Runnable visibleItemsReporter = new Runnable() {
+		public void run(){
+			reportVisibleItems();
+		}
+	};
+
 	/* service configuration */
 	//the handler class to process new messages
 	class IncomingHandler extends Handler {
@@ -110,6 +120,7 @@ public class ReaderActivity extends Activity {
 				if(lastLoadTime == 0 || difference > (60 * 60 * 1000)){
 					loadData(); //trigger a load
 				}
+				reportVisibleItems(); //so the load fills in the screen first
 				break;
 			case ResourceService.MSG_ERROR:
 				Bundle bundle = msg.getData(); //retrieve the data
@@ -469,6 +480,44 @@ public class ReaderActivity extends Activity {
     	sendMessageToService(what, null);
     } 
     
+    void reportVisibleItems(){
+    	//work out which categories are on the screen
+    	int top = scroller.getScrollY();
+    	int height = scroller.getHeight();
+    	ArrayList<Integer> visible = new ArrayList<Integer>();
+    	ArrayList<Integer> upcoming = new ArrayList<Integer>();
+    	for(int i = 0; i < physicalCategories.size(); i++){
+    		TableLayout category = physicalCategories.get(i);
+    		ArrayList<Integer> ids = null;
+    		if(category.getBottom() > top && category.getTop() < top + height){
+    			ids = visible;
+    		}
+    		//a category within a screen of the edge is the next one the user will see, whichever way they scroll
+    		else if(category.getBottom() > top - height && category.getTop() < top + (2 * height)){
+    			ids = upcoming;
+    		}
+    		if(ids != null){
+    			for(int t = 0; t < physicalItems[i].length; t++){
+    				if(physicalItems[i][t].isItem()){
+    					ids.add(physicalItems[i][t].getId());
+    				}
+    			}
+    		}
+    	}
+    	Bundle bundle = new Bundle();
+    	bundle.putIntArray(ResourceService.KEY_VISIBLE_ITEMS, toIntArray(visible));
+    	bundle.putIntArray(ResourceService.KEY_UPCOMING_ITEMS, toIntArray(upcoming));
+    	sendMessageToService(ResourceService.MSG_VISIBLE_ITEMS, bundle);
+    }
+    
+    static int[] toIntArray(ArrayList<Integer> list){
+    	int[] array = new int[list.size()];
+    	for(int i = 0; i < array.length; i++){
+    		array[i] = list.get(i);
+    	}
+    	return array;
+    }
+    
     /** Called when the activity is first created. */
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -484,6 +533,18 @@ public class ReaderActivity extends Activity {
         //make references to ui items
         refreshButton = (Button) findViewById(R.id.refreshButton);
         statusText = (TextView) findViewById(R.id.statusText);
+        scroller = (ScrollView) findViewById(R.id.newsScroller);
+        
+        //tell the service what is on the screen when the user stops scrolling
+        scroller.setOnTouchListener(new OnTouchListener() {
+        	public boolean onTouch(View view, MotionEvent event){
+        		if(event.getAction() == MotionEvent.ACTION_UP){
+        			scroller.removeCallbacks(visibleItemsReporter);
+        			scroller.postDelayed(visibleItemsReporter, VISIBLE_ITEMS_DELAY);
+        		}
+        		return false; //let the scroller handle the touch
+        	}
+        });
         
         //load the preferences system
         settings = getSharedPreferences(PREFS_FILE_NAME, MODE_PRIVATE); //load settings in read/write form
@@ -513,6 +574,8 @@ public class ReaderActivity extends Activity {
     	//update the last loaded display
     	setLastLoadTime(lastLoadTime);
     	//TODO update display more often?
+    	//another activity may have changed what should load first
+    	scroller.post(visibleItemsReporter);
     }
     
     void loadSettings(){
@@ -566,6 +629,8 @@ public class ReaderActivity extends Activity {
         	//populate this category with news
         	displayCategoryItems(i);
         }
+        //the categories have no size until they are laid out
+        scroller.post(visibleItemsReporter);
     }
     
     void displayCategoryItems(int category){
@@ -611,6 +676,7 @@ public class ReaderActivity extends Activity {
     			id = i;
     	}
     	displayCategoryItems(id); //redisplay this category
+    	reportVisibleItems(); //the category may have new items on the screen
     }
     
     public boolean onCreateOptionsMenu(Menu menu){
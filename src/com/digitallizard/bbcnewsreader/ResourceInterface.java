@@ -10,7 +10,8 @@ import org.mcsoxford.rss.RSSItem;
 
 
 public interface ResourceInterface {
-	public void categoryRssLoaded(RSSItem[] items, String category); //called when the RSS has loaded
+	public void categoryRssItemLoaded(RSSItem item, String category, int priority); //called as each item of the RSS is parsed
+	public void categoryRssLoaded(String category); //called when the RSS has loaded
 	public void reportError(int type, String msg, String error);
 	public void rssLoadComplete(boolean successful);
 	public void fullLoadComplete(boolean successful);
@@ -6,9 +6,11 @@
  ******************************************************************************/
 package com.digitallizard.bbcnewsreader;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Date;
 
+import org.mcsoxford.rss.MediaThumbnail;
 import org.mcsoxford.rss.RSSItem;
 
 import android.app.AlarmManager;
@@ -34,7 +36,9 @@ import android.os.Messenger;
 import android.os.RemoteException;
 import android.util.Log;
 
+import com.digitallizard.bbcnewsreader.data.ArticleFiles;
 import com.digitallizard.bbcnewsreader.data.DatabaseHandler;
+import com.digitallizard.bbcnewsreader.resource.web.HttpTransport;
 import com.digitallizard.bbcnewsreader.resource.web.WebManager;
 import com.digitallizard.bbcnewsreader.widget.ReaderWidget;
 
@@ -45,12 +49,14 @@ public class ResourceService extends Service implements ResourceInterface {
 	final Messenger messenger = new Messenger(new IncomingHandler()); //the messenger used for communication
 	BroadcastReceiver broadcastReceiver;
 	DatabaseHandler database; //the database
+	HttpTransport transport; //the connections shared by every download
 	RSSManager rssManager;
 	WebManager webManager;
 	SharedPreferences settings;
 	OnSharedPreferenceChangeListener settingsChangedListener;
 	int totalItemsToDownload;
 	int itemsDownloaded;
+	int thumbnailWidth; //the width in pixels that a thumbnail is displayed at
 		
 	/* command definitions */
 	static final int MSG_REGISTER_CLIENT = 1;
@@ -68,10 +74,13 @@ public class ResourceService extends Service implements ResourceInterface {
 	static final int MSG_FULL_LOAD_COMPLETE = 8; //sent when all the data has been loaded
 	static final int MSG_RSS_LOAD_COMPLETE = 10;
 	static final int MSG_UPDATE_LOAD_PROGRESS = 18;
+	static final int MSG_VISIBLE_ITEMS = 17; //sent by the activities when the items on the screen change
 	static final int MSG_ERROR = 7; //help! An error occurred
 	static final String KEY_ERROR_TYPE = "type";
 	static final String KEY_ERROR_MESSAGE = "message";
 	static final String KEY_ERROR_ERROR = "error";
+	static final String KEY_VISIBLE_ITEMS = "visible";
+	static final String KEY_UPCOMING_ITEMS = "upcoming";
 	static final String ACTION_LOAD = "com.digitallizard.bbcnewsreader.action.LOAD_NEWS";
 	
 	//the handler class to process new messages
@@ -103,6 +112,10 @@ public class ResourceService extends Service implements ResourceInterface {
 			case MSG_STOP_DATA_LOAD:
 				stopDataLoad();
 				break;
+			case MSG_VISIBLE_ITEMS:
+				//download what the user is looking at first
+				getWebManager().setVisibleItems(msg.getData().getIntArray(KEY_VISIBLE_ITEMS), msg.getData().getIntArray(KEY_UPCOMING_ITEMS));
+				break;
 			default:
 				super.handleMessage(msg); //we don't know what to do, lets hope that the super class knows
 			}
@@ -231,20 +244,30 @@ public class ResourceService extends Service implements ResourceInterface {
 	}
 	
 	/**
-	 * Called when an RSS feed has loaded
-	 * @param item The item that has been loaded */
-	public synchronized void categoryRssLoaded(RSSItem[] items, String category){
-		// clear the priorities for this category to prevent old items hanging around
-		database.clearPriorities(category);
-		
-		//insert the items into the database
-		for(int i = 0; i < items.length; i++){
-			//check there are some thumbnails
-			String thumbUrl = null;
-			if(items[i].getThumbnails().size() == 2)
-				thumbUrl = items[i].getThumbnails().get(1).toString();
-			getDatabase().insertItem(items[i].getTitle(), items[i].getDescription(), category, items[i].getPubDate(), items[i].getLink().toString(), thumbUrl, i);
+	 * Called as each item of an RSS feed is parsed, while the rest of the feed is still downloading
+	 * @param item The item that has been parsed
+	 * @param priority The position of the item in its feed */
+	public synchronized void categoryRssItemLoaded(RSSItem item, String category, int priority){
+		// the first item of a feed replaces the old ones, clear the priorities to prevent old items hanging around
+		if(priority == 0){
+			database.clearPriorities(category);
 		}
+		
+		//choose the smallest thumbnail that fills the item's slot on this screen
+		String thumbUrl = null;
+		MediaThumbnail thumbnail = item.bestThumbnail(thumbnailWidth);
+		if(thumbnail != null)
+			thumbUrl = thumbnail.getUrlString();
+		//store an item without a date as published now, rather than clearing it out as old
+		long pubdate = item.hasPubDate() ? item.getPubDateMillis() : System.currentTimeMillis();
+		//insert the item into the database
+		getDatabase().insertItem(item.getTitle(), item.getDescription(), category, pubdate, item.getLinkString(), thumbUrl, priority);
+	}
+	
+	/**
+	 * Called when an RSS feed has loaded
+	 * @param category The category whose items have all been loaded */
+	public synchronized void categoryRssLoaded(String category){
 		//send a message to the gui to tell it that we have loaded the category
 		Bundle bundle = new Bundle();
 		bundle.putString("category", category);
@@ -282,10 +305,12 @@ public class ResourceService extends Service implements ResourceInterface {
 		Integer[][] items = database.getUndownloaded(itemLoadLimit);
 		
 		// load the undownloaded articles
+		int itemsQueued = 0;
 		Integer[] htmlIds = items[DatabaseHandler.COLUMN_UNDOWNLOADED_ARTICLES];
 		for(int t = 0; t < htmlIds.length; t++){
 			String url = database.getUrl(htmlIds[t]);
 			webManager.addToQueue(url, WebManager.ITEM_TYPE_HTML, htmlIds[t]);
+			itemsQueued++;
 		}
 		// load the undownloaded thumbnails
 		Integer[] thumbIds = items[DatabaseHandler.COLUMN_UNDOWNLOADED_ARTICLES];
@@ -303,6 +328,7 @@ public class ResourceService extends Service implements ResourceInterface {
 			else
 			{
 				webManager.addToQueue(url, WebManager.ITEM_TYPE_THUMB, thumbIds[t]);
+				itemsQueued++;
 			}
 		}
 		
@@ -311,7 +337,8 @@ public class ResourceService extends Service implements ResourceInterface {
 		reportItemsToDownload();
 		
 		//if we didn't have to add anything, report the load as fully complete
-		if(webManager.isQueueEmpty()){
+		//otherwise the web manager reports it, the workers may have emptied the queue already
+		if(itemsQueued == 0){
 			fullLoadComplete(true);
 		}
 		
@@ -339,7 +366,8 @@ public class ResourceService extends Service implements ResourceInterface {
 	public synchronized void itemDownloadComplete(boolean specific, int itemId, int type, Object download){
 		//choose what to do depending on the type of object
 		if(type == WebManager.ITEM_TYPE_HTML){
-			byte[] html = (byte[])download;
+			//the page has been written to a file, move it into place
+			File html = (File)download;
 			database.addHtml(itemId, html);
 			//if this item was specifically requested we need to report that it has been loaded
 			if(specific){
@@ -430,6 +458,7 @@ public class ResourceService extends Service implements ResourceInterface {
 	public void onCreate(){
 		//init variables
 		loadInProgress = false;
+		thumbnailWidth = (int)Math.ceil(ReaderActivity.NEWS_ITEM_DP_WIDTH * getResources().getDisplayMetrics().density); //convert from dp to pixels
 		
 		//load various key components
 		if(settings == null){
@@ -444,13 +473,17 @@ public class ResourceService extends Service implements ResourceInterface {
 				getDatabase().addCategoriesFromXml();
 	        }
 		}
+		if(transport == null){
+			//create the http connections
+			transport = new HttpTransport();
+		}
 		if(getWebManager() == null){
 			//load the web manager
-			setWebManager(new WebManager(this));
+			setWebManager(new WebManager(this, transport, ArticleFiles.getDirectory(this)));
 		}
 		if(rssManager == null){
 			//load the rss manager
-			rssManager = new RSSManager(this);
+			rssManager = new RSSManager(this, getDatabase(), transport);
 		}
 		
 		//register to receive alerts when a load is required
@@ -490,6 +523,10 @@ public class ResourceService extends Service implements ResourceInterface {
 		if(settings != null && settingsChangedListener != null){
 			settings.unregisterOnSharedPreferenceChangeListener(settingsChangedListener);
 		}
+		// close the http connections
+		if(transport != null){
+			transport.shutdown();
+		}
 		super.onDestroy();
 	}
 	
@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * BBC News Reader
+ * Released under the BSD License. See README or LICENSE.
+ * Copyright (c) 2011, Digital Lizard (Oscar Key, Thomas Boby)
+ * All rights reserved.
+ ******************************************************************************/
+package com.digitallizard.bbcnewsreader.data;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import android.content.Context;
+
+/**
+ * Keeps downloaded article pages in files named after their item, so a page never has to be held in memory to be
+ * stored. The html column of the item holds HTML_IN_FILE_CODE once the file is in place.
+ */
+public class ArticleFiles {
+	public static final byte[] HTML_IN_FILE_CODE = new byte[] { 126 };
+	static final String DIRECTORY = "articles";
+	
+	/**
+	 * @return The private directory of the pages, downloads should be written here so they can be renamed into place
+	 */
+	public static File getDirectory(Context context) {
+		return context.getDir(DIRECTORY, Context.MODE_PRIVATE);
+	}
+	
+	static File getFile(Context context, int itemId) {
+		return new File(getDirectory(context), itemId + ".html");
+	}
+	
+	/**
+	 * Moves a downloaded page into place in one step, replacing any older copy
+	 * @return False if the page could not be moved, in which case it has been deleted
+	 */
+	static boolean commit(Context context, File download, int itemId) {
+		if (download.renameTo(getFile(context, itemId))) {
+			return true;
+		}
+		download.delete();
+		return false;
+	}
+	
+	/**
+	 * @return The page, or null if the file is missing or can't be read
+	 */
+	static byte[] read(Context context, int itemId) {
+		File file = getFile(context, itemId);
+		try {
+			FileInputStream stream = new FileInputStream(file);
+			try {
+				byte[] html = new byte[(int) file.length()];
+				int total = 0;
+				int read;
+				while (total < html.length && (read = stream.read(html, total, html.length - total)) != -1) {
+					total += read;
+				}
+				return html;
+			} finally {
+				stream.close();
+			}
+		} catch (IOException e) {
+			return null; // the page has gone, the caller has to clear the marker for it to be downloaded again
+		}
+	}
+	
+	static void delete(Context context, int itemId) {
+		getFile(context, itemId).delete();
+	}
+	
+	static void deleteAll(Context context) {
+		File[] files = getDirectory(context).listFiles();
+		if (files != null) {
+			for (int i = 0; i < files.length; i++) {
+				files[i].delete();
+			}
+		}
+	}
+}
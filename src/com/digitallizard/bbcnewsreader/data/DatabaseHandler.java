@@ -6,9 +6,14 @@
  ******************************************************************************/
 package com.digitallizard.bbcnewsreader.data;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 
+import org.mcsoxford.rss.RSSValidatorStore;
+import org.mcsoxford.rss.RSSValidators;
+
 import android.content.ContentResolver;
 import android.content.ContentValues;
 import android.content.Context;
@@ -20,7 +25,7 @@ import com.digitallizard.bbcnewsreader.NewsItem;
 import com.digitallizard.bbcnewsreader.R;
 import com.digitallizard.bbcnewsreader.ReaderActivity;
 
-public class DatabaseHandler {
+public class DatabaseHandler implements RSSValidatorStore {
 
 	public static final int COLUMN_UNDOWNLOADED_ARTICLES = 0;
 	public static final int COLUMN_UNDOWNLOADED_THUMBNAILS = 1;
@@ -46,12 +51,18 @@ public class DatabaseHandler {
 	 *            News item's category as String
 	 */
 	public void insertItem(String title, String description, String category, Date pubdate, String url, String thumbnailUrl, int priority) {
-		// convert the date into a timestamp
-		long timestamp = pubdate.getTime();
-		Date now = new Date();
-		
+		// convert the date into a timestamp, an item without a date is treated as published now
+		long timestamp = (pubdate == null) ? System.currentTimeMillis() : pubdate.getTime();
+		insertItem(title, description, category, timestamp, url, thumbnailUrl, priority);
+	}
+	
+	/**
+	 * Inserts an RSSItem in the same way as {@link #insertItem(String, String, String, Date, String, String, int)}, taking the published date
+	 * as a unix timestamp in milliseconds.
+	 */
+	public void insertItem(String title, String description, String category, long timestamp, String url, String thumbnailUrl, int priority) {
 		// check if this news is older than we want to store
-		if (timestamp < (now.getTime() - clearOutAgeMilliSecs)) {
+		if (timestamp < (System.currentTimeMillis() - clearOutAgeMilliSecs)) {
 			// bail here, don't insert it
 			return;
 		}
@@ -75,6 +86,26 @@ public class DatabaseHandler {
 		contentResolver.update(uri, values, null, null);
 	}
 	
+	/**
+	 * Stores a page that has been downloaded to a file, without reading it into memory.
+	 * 
+	 * @param html
+	 *            The downloaded page, in the directory from {@link ArticleFiles#getDirectory(Context)}. It is moved into place.
+	 */
+	public void addHtml(int itemId, File html) {
+		// move the whole page into place before pointing the item at it
+		if (!ArticleFiles.commit(context, html, itemId)) {
+			return;
+		}
+		Uri uri = Uri.withAppendedPath(DatabaseProvider.CONTENT_URI_ITEMS, Integer.toString(itemId));
+		ContentValues values = new ContentValues(1);
+		values.put(DatabaseHelper.COLUMN_ITEM_HTML, ArticleFiles.HTML_IN_FILE_CODE);
+		if (contentResolver.update(uri, values, null, null) == 0) {
+			// the item was cleared out while it downloaded
+			ArticleFiles.delete(context, itemId);
+		}
+	}
+	
 	public byte[] getHtml(int itemId) {
 		Uri uri = Uri.withAppendedPath(DatabaseProvider.CONTENT_URI_ITEMS, Integer.toString(itemId));
 		Cursor cursor = contentResolver.query(uri, new String[] { DatabaseHelper.COLUMN_ITEM_HTML }, null, null, null);
@@ -86,6 +117,16 @@ public class DatabaseHandler {
 		cursor.moveToFirst();
 		byte[] html = cursor.getBlob(0);
 		cursor.close();
+		// pages downloaded since the switch to files are only marked in the database
+		if (html != null && Arrays.equals(html, ArticleFiles.HTML_IN_FILE_CODE)) {
+			html = ArticleFiles.read(context, itemId);
+			if (html == null) {
+				// the file has gone, clear the marker so the next load downloads the page again
+				ContentValues values = new ContentValues(1);
+				values.putNull(DatabaseHelper.COLUMN_ITEM_HTML);
+				contentResolver.update(uri, values, null, null);
+			}
+		}
 		return html;
 	}
 	
@@ -346,6 +387,53 @@ public class DatabaseHandler {
 		}
 	}
 	
+	/**
+	 * Returns the http validators stored with the category whose feed has the given url.
+	 * 
+	 * @param url
+	 *            The url of the category's RSS feed
+	 * @return The validators, or null if the category has none
+	 */
+	public RSSValidators getValidators(String url) {
+		Uri uri = DatabaseProvider.CONTENT_URI_CATEGORIES;
+		String[] projection = new String[] { DatabaseHelper.COLUMN_CATEGORY_ETAG, DatabaseHelper.COLUMN_CATEGORY_LAST_MODIFIED };
+		String selection = DatabaseHelper.COLUMN_CATEGORY_URL + "=?";
+		Cursor cursor = contentResolver.query(uri, projection, selection, new String[] { url }, null);
+		
+		// check if no rows were returned
+		if(cursor == null) {
+			return null;
+		}
+		
+		RSSValidators validators = null;
+		if(cursor.moveToFirst()) {
+			String etag = cursor.getString(cursor.getColumnIndex(DatabaseHelper.COLUMN_CATEGORY_ETAG));
+			String lastModified = cursor.getString(cursor.getColumnIndex(DatabaseHelper.COLUMN_CATEGORY_LAST_MODIFIED));
+			validators = new RSSValidators(etag, lastModified);
+		}
+		cursor.close();
+		
+		return validators;
+	}
+	
+	/**
+	 * Stores the http validators of a feed with the categories that use it. Only called once all the items of the feed are in the database.
+	 * 
+	 * @param url
+	 *            The url of the category's RSS feed
+	 * @param validators
+	 *            The validators of the latest response
+	 */
+	public void putValidators(String url, RSSValidators validators) {
+		Uri uri = DatabaseProvider.CONTENT_URI_CATEGORIES;
+		ContentValues values = new ContentValues(2);
+		values.put(DatabaseHelper.COLUMN_CATEGORY_ETAG, validators.getETag());
+		values.put(DatabaseHelper.COLUMN_CATEGORY_LAST_MODIFIED, validators.getLastModified());
+		String selection = DatabaseHelper.COLUMN_CATEGORY_URL + "=?";
+		contentResolver.update(uri, values, selection, new String[] { url });
+	}
+	
+
 	public void clearPriorities(String category){
 		Uri uri = DatabaseProvider.CONTENT_URI_RELATIONSHIPS;
 		ContentValues values = new ContentValues(1);
@@ -17,7 +17,7 @@ import android.database.sqlite.SQLiteQueryBuilder;
 public class DatabaseHelper {
 	/** constants **/
 	private static final String DATABASE_NAME = "bbcnewsreader.db";
-	private static final int DATABASE_VERSION = 2;
+	private static final int DATABASE_VERSION = 3;
 	
 	//table names
 	public static final String ITEM_TABLE = "items";
@@ -29,6 +29,8 @@ public class DatabaseHelper {
 	public static final String COLUMN_CATEGORY_NAME = "name";
 	public static final String COLUMN_CATEGORY_ENABLED = "enabled";
 	public static final String COLUMN_CATEGORY_URL = "url";
+	public static final String COLUMN_CATEGORY_ETAG = "etag";
+	public static final String COLUMN_CATEGORY_LAST_MODIFIED = "lastmodified";
 	
 	public static final String COLUMN_ITEM_ID = "item_Id";
 	public static final String COLUMN_ITEM_TITLE = "title";
@@ -150,7 +152,9 @@ public class DatabaseHelper {
 			"(category_Id integer PRIMARY KEY," +
 			"name varchar(255)," +
 			"enabled int," +
-			"url varchar(255))";
+			"url varchar(255)," +
+			"etag varchar(255)," +
+			"lastmodified varchar(255))";
 		private static final String CREATE_RELATIONSHIP_TABLE = "CREATE TABLE " + RELATIONSHIP_TABLE +
 			"(categoryName varchar(255), " +
 			"itemId INT," +
@@ -170,16 +174,22 @@ public class DatabaseHelper {
         @Override
         public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion){
 			//check what version to version upgrade we are performing
-			if(oldVersion == 1 && newVersion == 2){
-				//drop tables
-				db.execSQL("DROP TABLE " + ITEM_TABLE);
-				db.execSQL("DROP TABLE " + RELATIONSHIP_TABLE);
-				//create tables
-				db.execSQL(CREATE_ITEM_TABLE);
-				db.execSQL(CREATE_RELATIONSHIP_TABLE);
+			if((oldVersion == 1 || oldVersion == 2) && newVersion == 3){
+				if(oldVersion == 1){
+					//drop tables
+					db.execSQL("DROP TABLE " + ITEM_TABLE);
+					db.execSQL("DROP TABLE " + RELATIONSHIP_TABLE);
+					//create tables
+					db.execSQL(CREATE_ITEM_TABLE);
+					db.execSQL(CREATE_RELATIONSHIP_TABLE);
+				}
+				//version 3 stores the http validators of each category's feed, keep the enabled categories
+				db.execSQL("ALTER TABLE " + CATEGORY_TABLE + " ADD COLUMN " + COLUMN_CATEGORY_ETAG + " varchar(255)");
+				db.execSQL("ALTER TABLE " + CATEGORY_TABLE + " ADD COLUMN " + COLUMN_CATEGORY_LAST_MODIFIED + " varchar(255)");
 			}
 			else{
 				//reset everything to be sure
+				ArticleFiles.deleteAll(context);
 				db.execSQL("DROP TABLE " + ITEM_TABLE);
 				db.execSQL("DROP TABLE " + CATEGORY_TABLE);
 				db.execSQL("DROP TABLE " + RELATIONSHIP_TABLE);
@@ -191,6 +201,7 @@ public class DatabaseHelper {
         
         @SuppressWarnings("unused")
 		public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion){
+        	ArticleFiles.deleteAll(context);
         	db.execSQL("DROP TABLE " + ITEM_TABLE);
   		   	db.execSQL("DROP TABLE " + CATEGORY_TABLE);
   		   	db.execSQL("DROP TABLE " + RELATIONSHIP_TABLE);
@@ -158,6 +158,7 @@ public class DatabaseProvider extends ContentProvider {
 					values.putNull(DatabaseHelper.COLUMN_ITEM_THUMBNAIL);
 					selection = DatabaseHelper.COLUMN_ITEM_ID + "=?";
 					database.update(DatabaseHelper.ITEM_TABLE, values, selection, new String[] { Long.toString(id) });
+					ArticleFiles.delete(getContext(), (int) id); // the page will be downloaded again
 				}
 				cursor.close();
 			}
@@ -215,6 +216,10 @@ public class DatabaseProvider extends ContentProvider {
 		return database.update(DatabaseHelper.CATEGORY_TABLE, values, selection, selectionArgs);
 	}
 	
+	private int updateCategories(ContentValues values, String selection, String[] selectionArgs){
+		return database.update(DatabaseHelper.CATEGORY_TABLE, values, selection, selectionArgs);
+	}
+	
 	private int updateRelationships(ContentValues values, String selection, String[] selectionArgs){
 		return database.update(DatabaseHelper.RELATIONSHIP_TABLE, values, selection, selectionArgs);
 	}
@@ -230,6 +235,9 @@ public class DatabaseProvider extends ContentProvider {
 		selectionArgs = new String[] {Integer.toString(id)};
 		database.delete(DatabaseHelper.RELATIONSHIP_TABLE, selection, selectionArgs);
 		
+		// delete the downloaded page, if there is one
+		ArticleFiles.delete(getContext(), id);
+		
 		return 1;
 	}
 	
@@ -307,6 +315,8 @@ public class DatabaseProvider extends ContentProvider {
 		case ITEM_BY_ID:
 			int id = Integer.parseInt(uri.getLastPathSegment());
 			return updateItem(values, id);
+		case CATEGORIES:
+			return updateCategories(values, selection, selectionArgs);
 		case CATEGORY_BY_ID:
 			id = Integer.parseInt(uri.getLastPathSegment());
 			return updateCategory(values, id);
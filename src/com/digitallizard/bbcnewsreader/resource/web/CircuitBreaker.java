@@ -0,0 +1,117 @@
+/*******************************************************************************
+ * BBC News Reader
+ * Released under the BSD License. See README or LICENSE.
+ * Copyright (c) 2011, Digital Lizard (Oscar Key, Thomas Boby)
+ * All rights reserved.
+ ******************************************************************************/
+package com.digitallizard.bbcnewsreader.resource.web;
+
+/**
+ * Stops downloads from a host that keeps failing. After a few network errors in a row the circuit opens and nothing is
+ * downloaded from the host for a while. Then it is half open and one download is let through to test the host, if that
+ * works the circuit closes again, otherwise it opens for twice as long. Not thread safe, the web manager guards it with
+ * its lock.
+ */
+public class CircuitBreaker {
+	/* constants */
+	public static final int STATE_CLOSED = 0;
+	public static final int STATE_OPEN = 1;
+	public static final int STATE_HALF_OPEN = 2;
+	static final int FAILURE_THRESHOLD = 3; //the network errors in a row that open the circuit
+	static final long OPEN_TIME = 5000; //milliseconds the circuit stays open the first time
+	static final long MAX_OPEN_TIME = 60000;
+	static final int MAX_TRIPS = 4; //the times the circuit can open in a row before the host is given up on
+	
+	/* variables */
+	private int state;
+	private int failures; //network errors since the last success
+	private int trips; //the times the circuit has opened since the last success
+	private long openUntil; //the time the circuit becomes half open, in milliseconds
+	private boolean testing; //true while the test download of a half open circuit runs
+	
+	public CircuitBreaker(){
+		state = STATE_CLOSED;
+	}
+	
+	/**
+	 * Checks if a download from the host can start, and if so counts it as started
+	 * @param now The time in milliseconds
+	 * @return True if the download can start
+	 */
+	public boolean allowRequest(long now){
+		if(state == STATE_OPEN){
+			if(now < openUntil){
+				return false;
+			}
+			state = STATE_HALF_OPEN;
+		}
+		if(state == STATE_HALF_OPEN){
+			//only let one download through to test the host
+			if(testing){
+				return false;
+			}
+			testing = true;
+		}
+		return true;
+	}
+	
+	/**
+	 * Records that the host answered, even if the answer was an error page
+	 */
+	public void succeeded(){
+		state = STATE_CLOSED;
+		failures = 0;
+		trips = 0;
+		testing = false;
+	}
+	
+	/**
+	 * Records a network error
+	 * @param now The time in milliseconds
+	 */
+	public void failed(long now){
+		if(state == STATE_OPEN){
+			return; //a download that started before the circuit opened, it tells us nothing new
+		}
+		failures++;
+		if(state == STATE_HALF_OPEN || failures >= FAILURE_THRESHOLD){
+			//wait twice as long each time the host fails the test
+			state = STATE_OPEN;
+			openUntil = now + Math.min(MAX_OPEN_TIME, OPEN_TIME << trips);
+			trips++;
+			testing = false;
+		}
+	}
+	
+	/**
+	 * Records that a download ended without saying anything about the host, so a half open circuit can test it again
+	 */
+	public void probeFinished(){
+		testing = false;
+	}
+	
+	/**
+	 * @return True if a half open circuit is waiting to let a test download through
+	 */
+	public boolean isProbeDue(){
+		return state == STATE_HALF_OPEN && !testing;
+	}
+	
+	/**
+	 * @return True if the host has failed so many times that its downloads should be given up
+	 */
+	public boolean isDead(){
+		return trips >= MAX_TRIPS;
+	}
+	
+	public int getState(){
+		return state;
+	}
+	
+	/**
+	 * @return The time the open circuit lets a test download through, in milliseconds
+	 */
+	public long getOpenUntil(){
+		return openUntil;
+	}
+}
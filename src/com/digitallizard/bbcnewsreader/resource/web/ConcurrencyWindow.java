@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * BBC News Reader
+ * Released under the BSD License. See README or LICENSE.
+ * Copyright (c) 2011, Digital Lizard (Oscar Key, Thomas Boby)
+ * All rights reserved.
+ ******************************************************************************/
+package com.digitallizard.bbcnewsreader.resource.web;
+
+/**
+ * Decides how many downloads run at once, using additive increase and multiplicative decrease. The throughput is measured
+ * over rounds of as many downloads as the window allows. The window grows by one while each round is faster than the last,
+ * and halves on a timeout or when the throughput collapses. If an extra download doesn't make a round faster, the window
+ * steps back and tries again a few rounds later. Not thread safe, the web manager guards it with its lock.
+ */
+public class ConcurrencyWindow {
+	/* constants */
+	static final int INITIAL_WINDOW = 2;
+	static final double IMPROVEMENT = 1.1; //a round has to be this much faster to grow the window
+	static final double COLLAPSE = 0.5; //a round this much slower shrinks the window
+	static final double LATENCY_WEIGHT = 0.2; //the weight of each new latency in the average
+	static final int PROBE_INTERVAL = 4; //the rounds to wait before growing again after growing didn't help
+	
+	/* variables */
+	private int minWindow;
+	private int maxWindow;
+	private int window;
+	private long roundStart; //the time the current round started, in milliseconds
+	private int roundRequests;
+	private long roundBytes;
+	private double lastThroughput; //bytes per second of the last round, 0 if there is nothing to compare with
+	private boolean probing; //true if the window grew for the current round
+	private int holdRounds; //the rounds left before the window may grow without the throughput improving
+	private double averageLatency; //milliseconds
+	
+	public ConcurrencyWindow(int minWindow, int maxWindow){
+		this.minWindow = minWindow;
+		this.maxWindow = maxWindow;
+		this.window = Math.max(minWindow, Math.min(INITIAL_WINDOW, maxWindow));
+		restart(System.currentTimeMillis());
+	}
+	
+	/**
+	 * Starts measuring again, the time between loads isn't part of any round
+	 * @param now The current time in milliseconds
+	 */
+	public void restart(long now){
+		roundStart = now;
+		roundRequests = 0;
+		roundBytes = 0;
+		lastThroughput = 0; //the network may have changed since the last load
+	}
+	
+	/**
+	 * Records a download that finished
+	 * @param bytes The size of the download
+	 * @param latency The time the download took in milliseconds
+	 * @param now The current time in milliseconds
+	 * @return true if the window has grown
+	 */
+	public boolean requestFinished(long bytes, long latency, long now){
+		averageLatency = (averageLatency == 0) ? latency : averageLatency * (1 - LATENCY_WEIGHT) + latency * LATENCY_WEIGHT;
+		roundRequests++;
+		roundBytes += bytes;
+		if(roundRequests < window){
+			return false;
+		}
+		
+		//the round is over, compare it with the last one
+		double throughput = roundBytes * 1000.0 / Math.max(1, now - roundStart);
+		boolean improved = lastThroughput > 0 && throughput > lastThroughput * IMPROVEMENT;
+		boolean grown = false;
+		if(lastThroughput > 0 && throughput < lastThroughput * COLLAPSE){
+			decrease();
+		}
+		else if(probing && !improved){
+			//the extra download didn't help, go back and try again later
+			window = Math.max(minWindow, window - 1);
+			holdRounds = PROBE_INTERVAL;
+		}
+		else if(improved || holdRounds == 0){
+			if(window < maxWindow){
+				window++;
+				grown = true;
+			}
+		}
+		else{
+			holdRounds--;
+		}
+		probing = grown;
+		lastThroughput = throughput;
+		startRound(now);
+		return grown;
+	}
+	
+	/**
+	 * Records a download that timed out, which halves the window
+	 * @param now The current time in milliseconds
+	 */
+	public void requestTimedOut(long now){
+		decrease();
+		//measure the smaller window from scratch
+		lastThroughput = 0;
+		startRound(now);
+	}
+	
+	private void decrease(){
+		window = Math.max(minWindow, window / 2);
+		probing = false;
+		holdRounds = PROBE_INTERVAL;
+	}
+	
+	private void startRound(long now){
+		roundStart = now;
+		roundRequests = 0;
+		roundBytes = 0;
+	}
+	
+	/**
+	 * @return The number of downloads that may run at once
+	 */
+	public int getWindow(){
+		return window;
+	}
+	
+	/**
+	 * @return The throughput of the last round in bytes per second, or 0 if it hasn't been measured yet
+	 */
+	public double getThroughput(){
+		return lastThroughput;
+	}
+	
+	/**
+	 * @return The moving average of the download latency in milliseconds
+	 */
+	public double getAverageLatency(){
+		return averageLatency;
+	}
+}
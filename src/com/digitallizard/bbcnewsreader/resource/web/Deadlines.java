@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * BBC News Reader
+ * Released under the BSD License. See README or LICENSE.
+ * Copyright (c) 2011, Digital Lizard (Oscar Key, Thomas Boby)
+ * All rights reserved.
+ ******************************************************************************/
+package com.digitallizard.bbcnewsreader.resource.web;
+
+/**
+ * The time limits of one download, in milliseconds
+ */
+public class Deadlines {
+	private int connect;
+	private int firstByte;
+	private int total;
+	
+	/**
+	 * @param connect The time allowed to open the connection
+	 * @param firstByte The time allowed between sending the request and the first byte of the response, also the longest
+	 * the body may stall
+	 * @param total The time allowed for the whole download, or 0 for no limit
+	 */
+	public Deadlines(int connect, int firstByte, int total){
+		this.connect = connect;
+		this.firstByte = firstByte;
+		this.total = total;
+	}
+	
+	public int getConnect(){
+		return connect;
+	}
+	
+	public int getFirstByte(){
+		return firstByte;
+	}
+	
+	public int getTotal(){
+		return total;
+	}
+}
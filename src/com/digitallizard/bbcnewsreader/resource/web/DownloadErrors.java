@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * BBC News Reader
+ * Released under the BSD License. See README or LICENSE.
+ * Copyright (c) 2011, Digital Lizard (Oscar Key, Thomas Boby)
+ * All rights reserved.
+ ******************************************************************************/
+package com.digitallizard.bbcnewsreader.resource.web;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.ClientProtocolException;
+
+/**
+ * Sorts download failures into network errors, which may go away if the download is tried again, and content errors,
+ * which will happen every time
+ */
+public class DownloadErrors {
+	/**
+	 * @return True if the failure was caused by the connection or an overloaded server, so retrying may help
+	 */
+	public static boolean isNetworkError(Exception e){
+		if(isLocalError(e)){
+			return false;
+		}
+		if(e instanceof HttpStatusException){
+			int status = ((HttpStatusException) e).getStatusCode();
+			//the server is busy or broken, rather than the page being missing
+			return status >= HttpStatus.SC_INTERNAL_SERVER_ERROR || status == HttpStatus.SC_REQUEST_TIMEOUT
+					|| status == 429;
+		}
+		if(e instanceof MalformedURLException || e instanceof ClientProtocolException){
+			//the url or the response is wrong, the same thing will happen again
+			return false;
+		}
+		//timeouts, refused connections, unknown hosts and bodies that were cut off
+		return e instanceof IOException;
+	}
+	
+	/**
+	 * @return True if the failure happened on this device, so the host was never asked or its answer was fine
+	 */
+	public static boolean isLocalError(Exception e){
+		//a url that can't be requested, or storage that can't be written
+		return e instanceof MalformedURLException || e instanceof IllegalArgumentException || e instanceof StorageException;
+	}
+}
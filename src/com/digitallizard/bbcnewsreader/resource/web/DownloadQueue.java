@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * BBC News Reader
+ * Released under the BSD License. See README or LICENSE.
+ * Copyright (c) 2011, Digital Lizard (Oscar Key, Thomas Boby)
+ * All rights reserved.
+ ******************************************************************************/
+package com.digitallizard.bbcnewsreader.resource.web;
+
+import java.util.HashMap;
+
+/**
+ * A priority queue of downloads that is indexed by item id and type. Each item can only be queued once, and its priority
+ * can be changed in O(log n) while it is queued. Items of equal priority come out in the order they were added.
+ * Not thread safe, the web manager guards it with its lock.
+ */
+public class DownloadQueue {
+	/* variables */
+	private QueueItem[] heap;
+	private int size;
+	private HashMap<Long, Integer> index; //the position of each item in the heap
+	private long nextSequence; //used to keep items of equal priority in order
+	
+	public DownloadQueue(){
+		heap = new QueueItem[32];
+		index = new HashMap<Long, Integer>();
+	}
+	
+	static Long key(int itemId, int type){
+		return Long.valueOf(((long)itemId << 32) | (type & 0xffffffffL));
+	}
+	
+	static Long key(QueueItem item){
+		return key(item.getItemId(), item.getType());
+	}
+	
+	public int size(){
+		return size;
+	}
+	
+	public boolean isEmpty(){
+		return size == 0;
+	}
+	
+	/**
+	 * Adds the item, or raises the priority of the queued item with the same id and type
+	 * @return true if the item was added, false if it was already queued
+	 */
+	public boolean add(QueueItem item){
+		Integer position = index.get(key(item));
+		if(position != null){
+			//a duplicate can only make the queued item more urgent
+			QueueItem queued = heap[position];
+			if(item.getBasePriority() > queued.getBasePriority()){
+				queued.setBasePriority(item.getBasePriority());
+			}
+			if(item.getPriority() > queued.getPriority()){
+				queued.setPriority(item.getPriority());
+				siftUp(position);
+			}
+			return false;
+		}
+		item.setSequence(nextSequence++);
+		insert(item);
+		return true;
+	}
+	
+	/**
+	 * Puts back an item that was polled, keeping its place among items of equal priority
+	 */
+	void readd(QueueItem item){
+		if(!index.containsKey(key(item))){
+			insert(item);
+		}
+	}
+	
+	/**
+	 * @return The queued item with this id and type, or null
+	 */
+	public QueueItem get(int itemId, int type){
+		Integer position = index.get(key(itemId, type));
+		return (position == null) ? null : heap[position];
+	}
+	
+	/**
+	 * Changes the priority of a queued item and moves it to its new place
+	 * @return false if the item isn't queued
+	 */
+	public boolean setPriority(int itemId, int type, int priority){
+		Integer position = index.get(key(itemId, type));
+		if(position == null){
+			return false;
+		}
+		QueueItem item = heap[position];
+		int old = item.getPriority();
+		item.setPriority(priority);
+		if(priority > old){
+			siftUp(position);
+		}
+		else if(priority < old){
+			siftDown(position);
+		}
+		return true;
+	}
+	
+	/**
+	 * @return The highest priority item, or null if the queue is empty
+	 */
+	public QueueItem peek(){
+		return (size == 0) ? null : heap[0];
+	}
+	
+	/**
+	 * Removes the highest priority item
+	 * @return The item, or null if the queue is empty
+	 */
+	public QueueItem poll(){
+		if(size == 0){
+			return null;
+		}
+		return removeAt(0);
+	}
+	
+	/**
+	 * Removes the item with this id and type
+	 * @return The item, or null if it wasn't queued
+	 */
+	public QueueItem remove(int itemId, int type){
+		Integer position = index.get(key(itemId, type));
+		if(position == null){
+			return null;
+		}
+		return removeAt(position);
+	}
+	
+	public void clear(){
+		for(int i = 0; i < size; i++){
+			heap[i] = null;
+		}
+		size = 0;
+		index.clear();
+	}
+	
+	private void insert(QueueItem item){
+		if(size == heap.length){
+			//grow the heap
+			QueueItem[] larger = new QueueItem[heap.length * 2];
+			System.arraycopy(heap, 0, larger, 0, size);
+			heap = larger;
+		}
+		heap[size] = item;
+		index.put(key(item), size);
+		size++;
+		siftUp(size - 1);
+	}
+	
+	private QueueItem removeAt(int position){
+		QueueItem item = heap[position];
+		index.remove(key(item));
+		size--;
+		if(position != size){
+			//fill the gap with the last item and move it to its place
+			heap[position] = heap[size];
+			index.put(key(heap[position]), position);
+			heap[size] = null;
+			siftDown(position);
+			siftUp(position);
+		}
+		else{
+			heap[size] = null;
+		}
+		return item;
+	}
+	
+	/**
+	 * @return True if a should come out of the queue before b
+	 */
+	private static boolean before(QueueItem a, QueueItem b){
+		if(a.getPriority() != b.getPriority()){
+			return a.getPriority() > b.getPriority();
+		}
+		return a.getSequence() < b.getSequence();
+	}
+	
+	private void siftUp(int position){
+		QueueItem item = heap[position];
+		while(position > 0){
+			int parent = (position - 1) / 2;
+			if(!before(item, heap[parent])){
+				break;
+			}
+			move(heap[parent], position);
+			position = parent;
+		}
+		move(item, position);
+	}
+	
+	private void siftDown(int position){
+		QueueItem item = heap[position];
+		int half = size / 2;
+		while(position < half){
+			int child = 2 * position + 1;
+			if(child + 1 < size && before(heap[child + 1], heap[child])){
+				child++;
+			}
+			if(!before(heap[child], item)){
+				break;
+			}
+			move(heap[child], position);
+			position = child;
+		}
+		move(item, position);
+	}
+	
+	private void move(QueueItem item, int position){
+		heap[position] = item;
+		index.put(key(item), position);
+	}
+}
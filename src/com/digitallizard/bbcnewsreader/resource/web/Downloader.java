@@ -0,0 +1,222 @@
+/*******************************************************************************
+ * BBC News Reader
+ * Released under the BSD License. See README or LICENSE.
+ * Copyright (c) 2011, Digital Lizard (Oscar Key, Thomas Boby)
+ * All rights reserved.
+ ******************************************************************************/
+package com.digitallizard.bbcnewsreader.resource.web;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.HttpEntity;
+
+/**
+ * Downloads the body of a response in large chunks. A small body is sized from the Content-Length header when it is
+ * not compressed, otherwise the body is read through a pooled buffer into an array that grows as the bytes arrive.
+ */
+public class Downloader {
+	/* constants */
+	static final int CHUNK_SIZE = 16 * 1024;
+	static final int MAX_POOLED_CHUNKS = 4; //one for each download that is likely to run at once
+	static final int DEFAULT_SIZE = 16 * 1024; //the initial size if the length is not known
+	static final int COMPRESSION_GUESS = 4; //compressed pages are usually about a quarter of their size
+	static final int MAX_INITIAL_SIZE = 4 * CHUNK_SIZE; //the most allocated on the server's word, before the bytes arrive
+	
+	/* variables */
+	private static final byte[][] pool = new byte[MAX_POOLED_CHUNKS][];
+	private static int pooled = 0;
+	
+	/**
+	 * Downloads the whole body of the response into an array
+	 * @param entity The body of the response
+	 * @param url The url that was requested, for logging
+	 * @return The decompressed body
+	 */
+	public static byte[] download(HttpEntity entity, String url) throws IOException {
+		TransferStream stream = TransferStream.open(entity, url);
+		try {
+			int length = contentLength(entity);
+			//the length is exact if the body isn't compressed
+			boolean exact = length >= 0 && stream.getContentEncoding() == null;
+			if(exact && length <= MAX_INITIAL_SIZE){
+				byte[] body = new byte[length];
+				if(readFully(stream, body) < length){
+					throw new IOException("The connection closed before the whole body was downloaded.");
+				}
+				int next = stream.read();
+				if(next == -1){
+					return body;
+				}
+				//the server sent more than it said, read the rest in chunks
+				byte[] larger = new byte[length + CHUNK_SIZE];
+				System.arraycopy(body, 0, larger, 0, length);
+				larger[length] = (byte)next;
+				return readChunks(stream, larger, length + 1);
+			}
+			byte[] body = readChunks(stream, new byte[initialSize(length)], 0);
+			if(exact && body.length < length){
+				throw new IOException("The connection closed before the whole body was downloaded.");
+			}
+			return body;
+		} finally {
+			stream.close();
+		}
+	}
+	
+	/**
+	 * Writes the body of the response to a file as it arrives, so it is never held in memory
+	 * @param entity The body of the response
+	 * @param url The url that was requested, for logging
+	 * @param file The file to write, it is replaced
+	 * @return The number of bytes written
+	 */
+	public static long downloadToFile(HttpEntity entity, String url, File file) throws IOException {
+		TransferStream stream = TransferStream.open(entity, url);
+		try {
+			long written = copy(stream, file);
+			int length = contentLength(entity);
+			if(length >= 0 && stream.getContentEncoding() == null && written < length){
+				throw new IOException("The connection closed before the whole body was downloaded.");
+			}
+			return written;
+		} finally {
+			stream.close();
+		}
+	}
+	
+	/**
+	 * Copies one file to another through a pooled chunk
+	 */
+	public static void copyFile(File from, File to) throws IOException {
+		FileInputStream stream = new FileInputStream(from);
+		try {
+			copy(stream, to);
+		} finally {
+			stream.close();
+		}
+	}
+	
+	/**
+	 * @throws StorageException If the file couldn't be written, as opposed to the stream failing
+	 */
+	static long copy(InputStream stream, File file) throws IOException {
+		byte[] chunk = acquireChunk();
+		OutputStream output;
+		try {
+			output = new FileOutputStream(file);
+		} catch (IOException e) {
+			releaseChunk(chunk);
+			throw new StorageException("Couldn't open " + file, e);
+		}
+		try {
+			long written = 0;
+			int read;
+			while((read = stream.read(chunk, 0, chunk.length)) != -1){
+				try {
+					output.write(chunk, 0, read);
+				} catch (IOException e) {
+					throw new StorageException("Couldn't write " + file, e);
+				}
+				written += read;
+			}
+			return written;
+		} finally {
+			output.close();
+			releaseChunk(chunk);
+		}
+	}
+	
+	/**
+	 * Reads until the array is full or the stream ends
+	 * @return The number of bytes read
+	 */
+	static int readFully(InputStream stream, byte[] buffer) throws IOException {
+		int total = 0;
+		while(total < buffer.length){
+			int read = stream.read(buffer, total, buffer.length - total);
+			if(read == -1){
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+	
+	/**
+	 * Reads the rest of the stream through a pooled chunk
+	 * @param body The array to read into, it is replaced by a larger one if needed
+	 * @param count The number of bytes of body that have already been read
+	 */
+	static byte[] readChunks(InputStream stream, byte[] body, int count) throws IOException {
+		byte[] chunk = acquireChunk();
+		try {
+			int read;
+			while((read = stream.read(chunk, 0, chunk.length)) != -1){
+				if(body.length - count < read){
+					//grow the array
+					byte[] larger = new byte[Math.max(body.length * 2, count + read)];
+					System.arraycopy(body, 0, larger, 0, count);
+					body = larger;
+				}
+				System.arraycopy(chunk, 0, body, count, read);
+				count += read;
+			}
+		} finally {
+			releaseChunk(chunk);
+		}
+		
+		//trim the array to the body
+		if(count == body.length){
+			return body;
+		}
+		byte[] trimmed = new byte[count];
+		System.arraycopy(body, 0, trimmed, 0, count);
+		return trimmed;
+	}
+	
+	/**
+	 * @return The length of the body as sent by the server, or -1 if it is not known or too large for an array
+	 */
+	static int contentLength(HttpEntity entity){
+		long length = entity.getContentLength();
+		if(length > Integer.MAX_VALUE){
+			return -1;
+		}
+		return (int)length;
+	}
+	
+	/**
+	 * @param length The length of the body as sent by the server, or -1 if it is not known
+	 * @return The size of the array to start reading into, it grows if the body is larger
+	 */
+	static int initialSize(int length){
+		if(length < 0){
+			return DEFAULT_SIZE;
+		}
+		//the header is only a hint, a wrong or hostile one mustn't cause a huge allocation
+		return (int)Math.min((long)length * COMPRESSION_GUESS, MAX_INITIAL_SIZE);
+	}
+	
+	static synchronized byte[] acquireChunk(){
+		if(pooled > 0){
+			pooled--;
+			byte[] chunk = pool[pooled];
+			pool[pooled] = null;
+			return chunk;
+		}
+		return new byte[CHUNK_SIZE];
+	}
+	
+	static synchronized void releaseChunk(byte[] chunk){
+		//keep a few chunks, let the rest be collected
+		if(pooled < MAX_POOLED_CHUNKS){
+			pool[pooled] = chunk;
+			pooled++;
+		}
+	}
+}
@@ -6,35 +6,20 @@
  ******************************************************************************/
 package com.digitallizard.bbcnewsreader.resource.web;
 
-import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
-import java.net.URLConnection;
-
-import org.apache.http.client.ClientProtocolException;
-import org.apache.http.util.ByteArrayBuffer;
 
 public class HtmlParser {
 
 	/**
-	 * @param args
+	 * @param page The transfer of the page, which may be aborted while it downloads
+	 * @param file The file to write the page to
+	 * @return The size of the page
 	 * @throws IOException 
-	 * @throws ClientProtocolException 
 	 */
-	public static byte[] getPage(String stringUrl) throws Exception {
-		URL url = new URL(stringUrl);
-		URLConnection connection = url.openConnection();
-		
-		InputStream stream = connection.getInputStream();
-		BufferedInputStream inputbuffer = new BufferedInputStream(stream);
-		
-		ByteArrayBuffer arraybuffer = new ByteArrayBuffer(50);
-		int current = 0;
-        while ((current = inputbuffer.read()) != -1) {
-                arraybuffer.append((byte) current);
-        }
-        return arraybuffer.toByteArray();
+	public static long savePage(Transfer page, File file) throws IOException {
+		//large pages are written as they arrive rather than built up in memory
+		return page.downloadTo(file);
 	}
 	
 	public static String parsePage(byte[] bytes){
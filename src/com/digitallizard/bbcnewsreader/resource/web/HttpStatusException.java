@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * BBC News Reader
+ * Released under the BSD License. See README or LICENSE.
+ * Copyright (c) 2011, Digital Lizard (Oscar Key, Thomas Boby)
+ * All rights reserved.
+ ******************************************************************************/
+package com.digitallizard.bbcnewsreader.resource.web;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the server answers a request with a status other than 200 OK
+ */
+public class HttpStatusException extends IOException {
+	private static final long serialVersionUID = 1L;
+	
+	private int statusCode;
+	
+	public HttpStatusException(int statusCode, String message){
+		super(message);
+		this.statusCode = statusCode;
+	}
+	
+	public int getStatusCode(){
+		return statusCode;
+	}
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ * BBC News Reader
+ * Released under the BSD License. See README or LICENSE.
+ * Copyright (c) 2011, Digital Lizard (Oscar Key, Thomas Boby)
+ * All rights reserved.
+ ******************************************************************************/
+package com.digitallizard.bbcnewsreader.resource.web;
+
+import java.io.IOException;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.StatusLine;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+
+/**
+ * The http client shared by every download of the service. Connections are kept alive and reused, so most requests to the
+ * BBC hosts don't need a new TCP or TLS handshake. Feeds, pages and thumbnails all go through the client, so another one
+ * can be passed in to replay recorded responses offline.
+ */
+public class HttpTransport {
+	/* constants */
+	public static final int MAX_CONNECTIONS = 8;
+	public static final int MAX_CONNECTIONS_PER_HOST = 4; //all our traffic goes to a few hosts
+	public static final int CONNECT_TIMEOUT = 15 * 1000; //milliseconds
+	public static final int READ_TIMEOUT = 30 * 1000; //milliseconds without any data
+	
+	/* variables */
+	private HttpClient httpClient;
+	private Timer deadlineTimer; //aborts transfers that take too long
+	
+	public HttpTransport(){
+		HttpParams params = new BasicHttpParams();
+		HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+		HttpConnectionParams.setConnectionTimeout(params, CONNECT_TIMEOUT);
+		HttpConnectionParams.setSoTimeout(params, READ_TIMEOUT);
+		//connections are pooled per host
+		ConnManagerParams.setMaxTotalConnections(params, MAX_CONNECTIONS);
+		ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(MAX_CONNECTIONS_PER_HOST));
+		ConnManagerParams.setTimeout(params, CONNECT_TIMEOUT); //the time to wait for a free connection
+		
+		SchemeRegistry schemes = new SchemeRegistry();
+		schemes.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+		schemes.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+		
+		httpClient = new DefaultHttpClient(new ThreadSafeClientConnManager(params, schemes), params);
+		deadlineTimer = new Timer("Download deadlines", true);
+	}
+	
+	/**
+	 * @param httpClient The client to send every request through, it must be thread safe. It is shut down with the
+	 * transport.
+	 */
+	public HttpTransport(HttpClient httpClient){
+		this.httpClient = httpClient;
+		deadlineTimer = new Timer("Download deadlines", true);
+	}
+	
+	/**
+	 * @return The thread safe client, for libraries that make their own requests. It must not be shut down by them.
+	 */
+	public HttpClient getHttpClient(){
+		return httpClient;
+	}
+	
+	/**
+	 * Prepares a download that can be aborted from another thread
+	 * @param url The url to download
+	 * @param deadlines The time limits of the download
+	 */
+	public Transfer newTransfer(String url, Deadlines deadlines){
+		return new Transfer(this, url, deadlines);
+	}
+	
+	HttpGet createRequest(String url){
+		HttpGet request = new HttpGet(url);
+		//ask for a compressed response
+		request.addHeader("Accept-Encoding", TransferStream.ACCEPT_ENCODING);
+		return request;
+	}
+	
+	HttpEntity execute(HttpGet request) throws IOException {
+		HttpResponse response = httpClient.execute(request);
+		StatusLine status = response.getStatusLine();
+		if(status.getStatusCode() != HttpStatus.SC_OK){
+			throw new HttpStatusException(status.getStatusCode(), "The server responded " + status.getStatusCode() + " " + status.getReasonPhrase() + " for " + request.getURI());
+		}
+		HttpEntity entity = response.getEntity();
+		if(entity == null){
+			throw new IOException("The server sent no body for " + request.getURI());
+		}
+		return entity;
+	}
+	
+	void schedule(TimerTask task, long delay){
+		deadlineTimer.schedule(task, delay);
+	}
+	
+	/**
+	 * Closes all the connections, the transport can't be used afterwards
+	 */
+	public void shutdown(){
+		deadlineTimer.cancel();
+		httpClient.getConnectionManager().shutdown();
+	}
+}
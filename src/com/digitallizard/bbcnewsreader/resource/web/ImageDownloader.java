@@ -6,28 +6,11 @@
  ******************************************************************************/
 package com.digitallizard.bbcnewsreader.resource.web;
 
-import java.io.BufferedInputStream;
-import java.io.InputStream;
-import java.net.URL;
-import java.net.URLConnection;
-
-import org.apache.http.util.ByteArrayBuffer;
+import java.io.IOException;
 
 public class ImageDownloader {
-	public static byte[] getImage(URL url) throws Exception {
-		URLConnection connection=url.openConnection();
-		
-		InputStream stream=connection.getInputStream();
-		BufferedInputStream inputbuffer=new BufferedInputStream(stream,8000);
-		
-		ByteArrayBuffer arraybuffer=new ByteArrayBuffer(50);
-		int current = 0;
-        while ((current = inputbuffer.read()) != -1) {
-                arraybuffer.append((byte) current);
-        }
-        
-        byte[] image=arraybuffer.toByteArray();
-        
-        return image;
+	public static byte[] getImage(Transfer image) throws IOException {
+		//images are rarely compressed, but the server chooses
+		return image.download();
 	}
 }
@@ -6,20 +6,33 @@
  ******************************************************************************/
 package com.digitallizard.bbcnewsreader.resource.web;
 
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
 
 public class QueueItem implements Comparable<QueueItem> {
 	public static final int PRIORITY_DOWNLOAD_NOW = 5; //the priority if instant download is needed
+	public static final int PRIORITY_VISIBLE = 4; //the item is on the screen
+	public static final int PRIORITY_UPCOMING = 3; //the item is about to be scrolled onto the screen
 	private String url;
+	private String host;
 	private int type;
 	private int itemId;
 	private int priority;
+	private int basePriority; //the priority the item was asked for with, without the visibility hints
+	private long sequence; //the order the item was queued in
+	private int attempts; //the downloads of this item that have failed
+	private long retryTime; //the time the item can be downloaded again, in milliseconds
+	private ArrayList<QueueItem> requests; //the items waiting for this download if there is more than one, otherwise null
 	
 	public QueueItem(String url, int type, int itemId, int priority)
 	{
 		this.url = url;
+		this.host = hostOf(url);
 		this.type = type;
 		this.itemId = itemId;
 		this.priority = priority;
+		this.basePriority = priority;
 	}
 	
 	public int compareTo(QueueItem item){
@@ -41,6 +54,21 @@ public class QueueItem implements Comparable<QueueItem> {
 		return url;
 	}
 	
+	public String getHost()
+	{
+		return host;
+	}
+	
+	static String hostOf(String url)
+	{
+		try {
+			return new URL(url).getHost();
+		} catch (MalformedURLException e) {
+			//the download will fail anyway, group these items together
+			return "";
+		}
+	}
+	
 	public int getItemId()
 	{
 		return itemId;
@@ -62,4 +90,73 @@ public class QueueItem implements Comparable<QueueItem> {
 	public void setPriority(int priority){
 		this.priority = priority;
 	}
+	
+	int getBasePriority(){
+		return basePriority;
+	}
+	
+	void setBasePriority(int basePriority){
+		this.basePriority = basePriority;
+	}
+	
+	long getSequence(){
+		return sequence;
+	}
+	
+	void setSequence(long sequence){
+		this.sequence = sequence;
+	}
+	
+	public int getAttempts(){
+		return attempts;
+	}
+	
+	long getRetryTime(){
+		return retryTime;
+	}
+	
+	/**
+	 * Counts a failed download and sets when the item can be tried again
+	 * @param retryTime The time in milliseconds
+	 */
+	void retryAt(long retryTime){
+		attempts++;
+		this.retryTime = retryTime;
+	}
+	
+	/**
+	 * Joins a request for the same url to this item, so one download answers both
+	 */
+	void attach(QueueItem request){
+		if(requests == null){
+			if(request.getItemId() == itemId){
+				return; //the same item asked twice
+			}
+			//keep this item's own request, its priority may be raised for the others
+			requests = new ArrayList<QueueItem>();
+			requests.add(new QueueItem(url, type, itemId, priority));
+		}
+		for(int i = 0; i < requests.size(); i++){
+			QueueItem waiting = requests.get(i);
+			if(waiting.getItemId() == request.getItemId()){
+				if(request.getPriority() > waiting.getPriority()){
+					waiting.setPriority(request.getPriority());
+				}
+				return;
+			}
+		}
+		requests.add(request);
+	}
+	
+	/**
+	 * @return The requests this download answers, one for each item waiting for it
+	 */
+	ArrayList<QueueItem> getRequests(){
+		if(requests == null){
+			ArrayList<QueueItem> single = new ArrayList<QueueItem>(1);
+			single.add(this);
+			return single;
+		}
+		return requests;
+	}
 }
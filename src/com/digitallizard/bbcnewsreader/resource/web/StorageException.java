@@ -0,0 +1,21 @@
+/*******************************************************************************
+ * BBC News Reader
+ * Released under the BSD License. See README or LICENSE.
+ * Copyright (c) 2011, Digital Lizard (Oscar Key, Thomas Boby)
+ * All rights reserved.
+ ******************************************************************************/
+package com.digitallizard.bbcnewsreader.resource.web;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a download can't be written to storage on this device, which says nothing about the host it came from
+ */
+public class StorageException extends IOException {
+	private static final long serialVersionUID = 1L;
+	
+	public StorageException(String message, IOException cause){
+		super(message);
+		initCause(cause);
+	}
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * BBC News Reader
+ * Released under the BSD License. See README or LICENSE.
+ * Copyright (c) 2011, Digital Lizard (Oscar Key, Thomas Boby)
+ * All rights reserved.
+ ******************************************************************************/
+package com.digitallizard.bbcnewsreader.resource.web;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.TimerTask;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.params.HttpConnectionParams;
+
+/**
+ * One download, which can be aborted from another thread. The connect and first byte deadlines are socket timeouts, the
+ * total deadline is enforced by aborting the request when it runs out.
+ */
+public class Transfer {
+	/* variables */
+	private HttpTransport transport;
+	private String url;
+	private Deadlines deadlines;
+	private HttpGet request;
+	private volatile boolean aborted;
+	private volatile boolean timedOut;
+	
+	Transfer(HttpTransport transport, String url, Deadlines deadlines){
+		this.transport = transport;
+		this.url = url;
+		this.deadlines = deadlines;
+		request = transport.createRequest(url);
+		//these override the transport's timeouts for this request only
+		HttpConnectionParams.setConnectionTimeout(request.getParams(), deadlines.getConnect());
+		HttpConnectionParams.setSoTimeout(request.getParams(), deadlines.getFirstByte());
+	}
+	
+	public String getUrl(){
+		return url;
+	}
+	
+	/**
+	 * Downloads the whole body into an array
+	 * @return The decompressed body
+	 * @throws InterruptedIOException If a deadline passed
+	 * @throws IOException If the server did not send the body or the transfer was aborted
+	 */
+	public byte[] download() throws IOException {
+		TimerTask deadline = start();
+		boolean complete = false;
+		try {
+			byte[] body = Downloader.download(transport.execute(request), url);
+			complete = true;
+			return body;
+		} catch (IOException e) {
+			throw failure(e);
+		} finally {
+			finish(deadline, complete);
+		}
+	}
+	
+	/**
+	 * Writes the body to a file as it arrives
+	 * @param file The file to write, it is replaced
+	 * @return The number of bytes written
+	 * @throws InterruptedIOException If a deadline passed
+	 * @throws IOException If the server did not send the body, the transfer was aborted or the file couldn't be written
+	 */
+	public long downloadTo(File file) throws IOException {
+		TimerTask deadline = start();
+		boolean complete = false;
+		try {
+			long written = Downloader.downloadToFile(transport.execute(request), url, file);
+			complete = true;
+			return written;
+		} catch (IOException e) {
+			throw failure(e);
+		} finally {
+			finish(deadline, complete);
+		}
+	}
+	
+	/**
+	 * Stops the transfer, closing its connection if it is running. Can be called from any thread, before or during the
+	 * download.
+	 */
+	public void abort(){
+		aborted = true;
+		request.abort();
+	}
+	
+	public boolean isAborted(){
+		return aborted;
+	}
+	
+	private TimerTask start(){
+		if(deadlines.getTotal() == 0){
+			return null;
+		}
+		TimerTask deadline = new TimerTask(){
+			public void run(){
+				timedOut = true;
+				request.abort();
+			}
+		};
+		transport.schedule(deadline, deadlines.getTotal());
+		return deadline;
+	}
+	
+	private void finish(TimerTask deadline, boolean complete){
+		if(deadline != null){
+			deadline.cancel();
+		}
+		if(!complete){
+			//the connection is part way through a body, don't reuse it
+			request.abort();
+		}
+	}
+	
+	/**
+	 * @return The exception to throw, which says why an aborted request stopped
+	 */
+	private IOException failure(IOException e){
+		if(timedOut && !aborted){
+			//the socket was closed under the download, report it as the timeout it is
+			InterruptedIOException timeout = new InterruptedIOException("The download took longer than " + deadlines.getTotal() + "ms: " + url);
+			timeout.initCause(e);
+			return timeout;
+		}
+		if(aborted){
+			IOException stopped = new IOException("The download was stopped: " + url);
+			stopped.initCause(e);
+			return stopped;
+		}
+		return e;
+	}
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * BBC News Reader
+ * Released under the BSD License. See README or LICENSE.
+ * Copyright (c) 2011, Digital Lizard (Oscar Key, Thomas Boby)
+ * All rights reserved.
+ ******************************************************************************/
+package com.digitallizard.bbcnewsreader.resource.web;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+
+import android.util.Log;
+
+/**
+ * Reads the body of a response, decompressing it as it is read. The request must have asked for compression with
+ * ACCEPT_ENCODING.
+ * The bytes are counted before and after decompression, and logged when the stream is closed.
+ */
+public class TransferStream extends FilterInputStream {
+	/* constants */
+	static final String ACCEPT_ENCODING = "gzip, deflate";
+	
+	/* variables */
+	private String url;
+	private String contentEncoding;
+	private CountingStream transferred; //the bytes as sent by the server
+	private long contentBytes;
+	
+	/**
+	 * Counts the bytes read from the connection
+	 */
+	static class CountingStream extends FilterInputStream {
+		long count;
+		
+		CountingStream(InputStream stream){
+			super(stream);
+		}
+		
+		public int read() throws IOException {
+			int b = super.read();
+			if(b >= 0){
+				count++;
+			}
+			return b;
+		}
+		
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int read = super.read(buffer, offset, length);
+			if(read > 0){
+				count += read;
+			}
+			return read;
+		}
+	}
+	
+	/**
+	 * Opens the body of a response
+	 * @param entity The body of the response
+	 * @param url The url that was requested, for logging
+	 * @return The decompressed body
+	 */
+	public static TransferStream open(HttpEntity entity, String url) throws IOException {
+		CountingStream transferred = new CountingStream(entity.getContent());
+		Header encoding = entity.getContentEncoding();
+		String contentEncoding = (encoding == null) ? null : encoding.getValue();
+		
+		//decompress the body as it is read
+		InputStream content = transferred;
+		try {
+			if("gzip".equalsIgnoreCase(contentEncoding) || "x-gzip".equalsIgnoreCase(contentEncoding)){
+				content = new GZIPInputStream(transferred, 8192);
+			}
+			else if("deflate".equalsIgnoreCase(contentEncoding)){
+				content = new InflaterInputStream(transferred);
+			}
+		} catch (IOException e) {
+			//the compressed header is broken, don't leave the connection open
+			transferred.close();
+			throw e;
+		}
+		return new TransferStream(content, transferred, contentEncoding, url);
+	}
+	
+	TransferStream(InputStream content, CountingStream transferred, String contentEncoding, String url){
+		super(content);
+		this.transferred = transferred;
+		this.contentEncoding = contentEncoding;
+		this.url = url;
+	}
+	
+	public int read() throws IOException {
+		int b = super.read();
+		if(b >= 0){
+			contentBytes++;
+		}
+		return b;
+	}
+	
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		int read = super.read(buffer, offset, length);
+		if(read > 0){
+			contentBytes += read;
+		}
+		return read;
+	}
+	
+	public boolean markSupported(){
+		return false;
+	}
+	
+	public void close() throws IOException {
+		super.close();
+		//every download closes a stream, so only build the message when it will be logged
+		if(Log.isLoggable("BBC News Reader", Log.DEBUG)){
+			Log.d("BBC News Reader", "Downloaded " + url + ": " + getTransferredBytes() + " bytes transferred, " + contentBytes + " bytes of " + 
+					(contentEncoding == null ? "uncompressed" : contentEncoding) + " content");
+		}
+	}
+	
+	/**
+	 * @return The number of bytes of the body as sent by the server
+	 */
+	public long getTransferredBytes(){
+		return transferred.count;
+	}
+	
+	/**
+	 * @return The number of bytes of the decompressed body
+	 */
+	public long getContentBytes(){
+		return contentBytes;
+	}
+	
+	/**
+	 * @return The content coding of the body, or null if it was not compressed
+	 */
+	public String getContentEncoding(){
+		return contentEncoding;
+	}
+}
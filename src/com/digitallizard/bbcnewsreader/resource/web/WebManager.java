@@ -6,29 +6,81 @@
  ******************************************************************************/
 package com.digitallizard.bbcnewsreader.resource.web;
 
-import java.net.URL;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.PriorityQueue;
+import java.util.Map;
+import java.util.Random;
+
+import android.util.Log;
 
 import com.digitallizard.bbcnewsreader.ReaderActivity;
 import com.digitallizard.bbcnewsreader.ResourceInterface;
 
-public class WebManager implements Runnable {
+public class WebManager {
 	/* constants */
 	public static final int ITEM_TYPE_HTML = 2;
 	public static final int ITEM_TYPE_THUMB = 1;
 	public static final int ITEM_TYPE_IMAGE = 0;
-	public static final int ERROR_FAIL_THRESHOLD = 4;
+	public static final int MAX_ATTEMPTS = 4; //the downloads of an item that can fail with network errors before it is given up
+	static final long RETRY_DELAY = 1000; //milliseconds before the first retry, doubled for each retry after it
+	static final long MAX_RETRY_DELAY = 30000;
+	//connect, first byte and total time limits, thumbnails are small so they shouldn't hold a worker for long
+	static final Deadlines HTML_DEADLINES = new Deadlines(10 * 1000, 15 * 1000, 60 * 1000);
+	static final Deadlines THUMB_DEADLINES = new Deadlines(5 * 1000, 10 * 1000, 20 * 1000);
+	static final Deadlines IMAGE_DEADLINES = new Deadlines(10 * 1000, 15 * 1000, 90 * 1000);
+	static final String DOWNLOAD_PREFIX = "download";
+	static final String DOWNLOAD_SUFFIX = ".tmp";
+	public static final int DEFAULT_WORKERS = 6; //the most downloads at once, the concurrency window decides how many run
+	//leave a connection to each host free for items the user is waiting for
+	public static final int DEFAULT_MAX_PER_HOST = HttpTransport.MAX_CONNECTIONS_PER_HOST - 1;
 	
 	/* variables */
-	PriorityQueue<QueueItem> downloadQueue;
+	DownloadQueue downloadQueue;
 	ResourceInterface handler;
+	HttpTransport transport;
+	private File downloadDirectory; //pages are written here, on the same storage as their final place
+	private int maxWorkers;
+	private int maxPerHost;
+	private ConcurrencyWindow window; //the number of downloads the network can sustain at once
+	private int workers; //the number of running worker threads
+	private int activeWorkers; //the number of workers that are downloading an item
+	private HashMap<String, Integer> activePerHost; //the number of downloads from each host
+	private HashMap<String, CircuitBreaker> breakers; //stops downloads from hosts that keep failing
+	private ArrayList<QueueItem> retries; //failed items waiting to be tried again
+	private HashMap<String, QueueItem> urlItems; //the queued, downloading and retrying item for each url
+	private ArrayList<Transfer> transfers; //the running downloads, aborted when the load is stopped
+	private HashSet<Integer> visibleItems; //the items on the screen, as reported by the activities
+	private HashSet<Integer> upcomingItems; //the items about to be scrolled onto the screen
+	private Random random;
 	private boolean queueEmpty;
 	private boolean keepDownloading;
-	Thread downloadThread;
 	private volatile boolean noError;
-	private volatile int numErrors;
+	private boolean errorReported; //only tell the user about the first failure of each load
+	private boolean finishPending; //set when the last worker has stopped, until it reports the end of the load
+	private boolean finishSuccessful;
 
+	/**
+	 * Takes items off the queue and downloads them until there is nothing left that it can download
+	 */
+	class Worker implements Runnable {
+		public void run(){
+			QueueItem item;
+			while((item = takeItem()) != null){
+				try {
+					downloadItem(item);
+				} finally {
+					itemFinished(item);
+				}
+			}
+			workerFinished();
+		}
+	}
+	
 	public synchronized boolean isQueueEmpty() {
 		return queueEmpty;
 	}
@@ -45,90 +97,616 @@ public class WebManager implements Runnable {
 		this.keepDownloading = keepDownloading;
 	}
 	
-	synchronized void setQueue(PriorityQueue<QueueItem> queue){
+	synchronized void setQueue(DownloadQueue queue){
 		downloadQueue = queue;
 	}
 	
-	synchronized PriorityQueue<QueueItem> getQueue(){
+	synchronized DownloadQueue getQueue(){
 		return downloadQueue;
 	}
 	
-	private void downloadItem(QueueItem item){
-		switch(item.getType()){
+	/**
+	 * Removes the highest priority item whose host isn't at its limit, waiting while the other workers use the hosts
+	 * @return The item, or null if the worker has been stopped
+	 */
+	synchronized QueueItem takeItem(){
+		QueueItem item = nextItem();
+		if(item == null){
+			//stop the worker while holding the lock, so an item queued now starts a new worker
+			workers--;
+			if(workers == 0){
+				//the load is over when the last worker stops
+				queueEmpty = true;
+				keepDownloading = false;
+				finishPending = true;
+				finishSuccessful = noError;
+			}
+		}
+		return item;
+	}
+	
+	private QueueItem nextItem(){
+		while(keepDownloading){
+			long now = System.currentTimeMillis();
+			long wakeTime = queueDueRetries(now);
+			if(downloadQueue.isEmpty()){
+				if(retries.isEmpty()){
+					return null; //there is nothing left to download
+				}
+				//wait for the next retry
+				if(!waitUntil(wakeTime, now)){
+					return null;
+				}
+				continue;
+			}
+			//items the user is waiting for ignore the limits, the transport keeps a connection free for them
+			QueueItem head = downloadQueue.peek();
+			if(head.wasSpecificallyRequested()){
+				return startItem(downloadQueue.poll());
+			}
+			if(activeWorkers >= window.getWindow()){
+				//wait until a download finishes or the window grows
+				if(!waitUntil(0, now)){
+					return null;
+				}
+				continue;
+			}
+			if(canStart(head, now)){
+				return startItem(downloadQueue.poll());
+			}
+			//look further down the queue for an item from another host
+			ArrayList<QueueItem> skipped = new ArrayList<QueueItem>();
+			QueueItem item = null;
+			while(item == null && !downloadQueue.isEmpty()){
+				QueueItem next = downloadQueue.poll();
+				if(canStart(next, now)){
+					item = next;
+				}
+				else{
+					skipped.add(next);
+				}
+			}
+			for(int i = 0; i < skipped.size(); i++){
+				downloadQueue.readd(skipped.get(i));
+			}
+			if(item != null){
+				return startItem(item);
+			}
+			//every queued item is waiting for a busy host or for a circuit to close
+			if(!waitUntil(earliest(wakeTime, breakerWakeTime(now)), now)){
+				return null;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Waits until notified or until the time is reached
+	 * @param time The time in milliseconds, or 0 to wait until notified
+	 * @return False if the worker was interrupted
+	 */
+	private boolean waitUntil(long time, long now){
+		try {
+			if(time == 0){
+				wait();
+			}
+			else{
+				wait(Math.max(1, time - now));
+			}
+		} catch (InterruptedException e) {
+			return false;
+		}
+		return true;
+	}
+	
+	private static long earliest(long a, long b){
+		if(a == 0){
+			return b;
+		}
+		if(b == 0){
+			return a;
+		}
+		return Math.min(a, b);
+	}
+	
+	/**
+	 * Moves the items whose retry time has come back into the queue
+	 * @return The time the next retry is due, or 0 if there are none waiting
+	 */
+	private long queueDueRetries(long now){
+		long next = 0;
+		for(int i = retries.size() - 1; i >= 0; i--){
+			QueueItem item = retries.get(i);
+			if(item.getRetryTime() <= now){
+				retries.remove(i);
+				downloadQueue.add(item);
+			}
+			else{
+				next = earliest(next, item.getRetryTime());
+			}
+		}
+		return next;
+	}
+	
+	/**
+	 * @return The time the next circuit lets a download through, or 0 if none are waiting to
+	 */
+	private long breakerWakeTime(long now){
+		long next = 0;
+		Iterator<Map.Entry<String, CircuitBreaker>> iterator = breakers.entrySet().iterator();
+		while(iterator.hasNext()){
+			Map.Entry<String, CircuitBreaker> entry = iterator.next();
+			CircuitBreaker breaker = entry.getValue();
+			if(breaker.isProbeDue()){
+				//the test download can start now, or when the host's last download finishes and wakes the workers
+				if(!activePerHost.containsKey(entry.getKey())){
+					next = earliest(next, now);
+				}
+			}
+			else if(breaker.getState() == CircuitBreaker.STATE_OPEN){
+				next = earliest(next, breaker.getOpenUntil());
+			}
+		}
+		return next;
+	}
+	
+	private boolean canStart(QueueItem item, long now){
+		//the breaker counts the download as started, so it has to be asked last
+		return hostDownloads(item) < maxPerHost && breakerFor(item.getHost()).allowRequest(now);
+	}
+	
+	private CircuitBreaker breakerFor(String host){
+		CircuitBreaker breaker = breakers.get(host);
+		if(breaker == null){
+			breaker = new CircuitBreaker();
+			breakers.put(host, breaker);
+		}
+		return breaker;
+	}
+	
+	private QueueItem startItem(QueueItem item){
+		activeWorkers++;
+		activePerHost.put(item.getHost(), hostDownloads(item) + 1);
+		return item;
+	}
+	
+	private int hostDownloads(QueueItem item){
+		Integer downloads = activePerHost.get(item.getHost());
+		return (downloads == null) ? 0 : downloads;
+	}
+	
+	synchronized void itemFinished(QueueItem item){
+		activeWorkers--;
+		int downloads = hostDownloads(item) - 1;
+		if(downloads == 0){
+			activePerHost.remove(item.getHost());
+		}
+		else{
+			activePerHost.put(item.getHost(), downloads);
+		}
+		notifyAll(); //a host is free, wake any waiting workers
+	}
+	
+	void workerFinished(){
+		boolean loadFinished;
+		boolean successful;
+		synchronized(this){
+			loadFinished = finishPending;
+			successful = finishSuccessful;
+			finishPending = false;
+		}
+		//report outside the lock, the handler may call back in
+		if(loadFinished){
+			handler.fullLoadComplete(successful);
+		}
+	}
+	
+	/**
+	 * Measures a download for the concurrency window
+	 * @param bytes The size of the download
+	 * @param start The time the download started in milliseconds
+	 * @return The requests the download answers
+	 */
+	synchronized ArrayList<QueueItem> downloadSucceeded(QueueItem item, long bytes, long start){
+		long now = System.currentTimeMillis();
+		breakerFor(item.getHost()).succeeded();
+		if(window.requestFinished(bytes, now - start, now)){
+			notifyAll(); //another worker can start
+		}
+		//later requests for the url start a new download, so nothing more can attach to this one
+		forget(item);
+		return item.getRequests();
+	}
+	
+	/**
+	 * Retries the item if the error was caused by the network, otherwise gives up on it
+	 */
+	void downloadFailed(QueueItem item, Exception e){
+		boolean networkError = DownloadErrors.isNetworkError(e);
+		boolean report;
+		synchronized(this){
+			long now = System.currentTimeMillis();
+			//timeouts mean the network is overloaded, other errors say nothing about it
+			if(e instanceof InterruptedIOException){
+				window.requestTimedOut(now);
+			}
+			CircuitBreaker breaker = breakerFor(item.getHost());
+			if(!keepDownloading){
+				breaker.probeFinished();
+				forget(item);
+				return; //the load has been stopped, so the error doesn't matter
+			}
+			if(networkError){
+				breaker.failed(now);
+				if(breaker.isDead()){
+					//the host has been failing for over a minute, give up on everything from it
+					removeHost(item.getHost());
+				}
+				else if(item.getAttempts() + 1 < MAX_ATTEMPTS){
+					retry(item, now); //requests for the url keep attaching to the item while it waits
+					return;
+				}
+				noError = false;
+				//only report once, other workers may fail at the same time
+				report = !errorReported || item.wasSpecificallyRequested();
+				errorReported = true;
+			}
+			else{
+				//trying again won't help
+				if(DownloadErrors.isLocalError(e)){
+					breaker.probeFinished(); //the host wasn't tested
+				}
+				else{
+					breaker.succeeded(); //the host answered, so it is working
+				}
+				report = item.wasSpecificallyRequested();
+			}
+			forget(item);
+		}
+		Log.w("BBC News Reader", "Failed to download " + item.getUrl(), e);
+		//report outside the lock, the handler may call back in
+		if(report){
+			int errorType = networkError ? ReaderActivity.ERROR_TYPE_INTERNET : ReaderActivity.ERROR_TYPE_GENERAL;
+			handler.reportError(errorType, "There was an error retrieving " + describe(item.getType()) + ".", e.toString());
+		}
+	}
+	
+	private void retry(QueueItem item, long now){
+		long delay = Math.min(MAX_RETRY_DELAY, RETRY_DELAY << item.getAttempts());
+		//spread the retries out so items that failed together don't all come back together
+		delay = delay / 2 + (long) (random.nextDouble() * (delay / 2));
+		item.retryAt(now + delay);
+		retries.add(item);
+	}
+	
+	/**
+	 * Drops the queued items and retries from a host
+	 */
+	private void removeHost(String host){
+		for(int i = retries.size() - 1; i >= 0; i--){
+			if(retries.get(i).getHost().equals(host)){
+				forget(retries.remove(i));
+			}
+		}
+		ArrayList<QueueItem> kept = new ArrayList<QueueItem>();
+		while(!downloadQueue.isEmpty()){
+			QueueItem item = downloadQueue.poll();
+			if(!item.getHost().equals(host)){
+				kept.add(item);
+			}
+			else{
+				forget(item);
+			}
+		}
+		for(int i = 0; i < kept.size(); i++){
+			downloadQueue.readd(kept.get(i));
+		}
+	}
+	
+	/**
+	 * Downloads the items on the screen first, then the items about to come onto it, then the rest of the prefetch.
+	 * The hints replace the previous ones, items that are no longer on the screen go back to their own priority.
+	 * @param visible The ids of the items on the screen
+	 * @param upcoming The ids of the items that will be on the screen next
+	 */
+	public synchronized void setVisibleItems(int[] visible, int[] upcoming){
+		visibleItems.clear();
+		upcomingItems.clear();
+		if(visible != null){
+			for(int i = 0; i < visible.length; i++){
+				visibleItems.add(visible[i]);
+			}
+		}
+		if(upcoming != null){
+			for(int i = 0; i < upcoming.length; i++){
+				upcomingItems.add(upcoming[i]);
+			}
+		}
+		//every queued, downloading and retrying item is in the url map
+		Iterator<QueueItem> iterator = urlItems.values().iterator();
+		while(iterator.hasNext()){
+			QueueItem item = iterator.next();
+			int priority = hintedPriority(item);
+			if(priority != item.getPriority() && !downloadQueue.setPriority(item.getItemId(), item.getType(), priority)){
+				item.setPriority(priority); //the item isn't in the queue, keep it for a retry
+			}
+		}
+	}
+	
+	/**
+	 * @return The priority of the item, raised if any item waiting for it is on the screen or about to be
+	 */
+	private int hintedPriority(QueueItem item){
+		int priority = item.getBasePriority();
+		ArrayList<QueueItem> requests = item.getRequests();
+		for(int i = 0; i < requests.size(); i++){
+			Integer itemId = requests.get(i).getItemId();
+			if(visibleItems.contains(itemId)){
+				priority = Math.max(priority, QueueItem.PRIORITY_VISIBLE);
+			}
+			else if(upcomingItems.contains(itemId)){
+				priority = Math.max(priority, QueueItem.PRIORITY_UPCOMING);
+			}
+		}
+		return priority;
+	}
+	
+	private static String urlKey(String url, int type){
+		return type + " " + url;
+	}
+	
+	private void forget(QueueItem item){
+		String key = urlKey(item.getUrl(), item.getType());
+		if(urlItems.get(key) == item){
+			urlItems.remove(key);
+		}
+	}
+	
+	/**
+	 * Moves an item up the queue because a more urgent request has attached to it
+	 */
+	private void raisePriority(QueueItem item, int priority){
+		if(!downloadQueue.setPriority(item.getItemId(), item.getType(), priority)){
+			//the item is downloading or waiting for a retry
+			item.setPriority(priority);
+			if(item.wasSpecificallyRequested() && retries.remove(item)){
+				downloadQueue.add(item); //the user is waiting, don't wait for the retry
+			}
+		}
+	}
+	
+	/**
+	 * Deletes the pages that were part way through downloading when the service was last stopped
+	 */
+	private void clearDownloads(){
+		File[] files = downloadDirectory.listFiles();
+		if(files != null){
+			for(int i = 0; i < files.length; i++){
+				String name = files[i].getName();
+				if(name.startsWith(DOWNLOAD_PREFIX) && name.endsWith(DOWNLOAD_SUFFIX)){
+					files[i].delete();
+				}
+			}
+		}
+	}
+	
+	private static String describe(int type){
+		switch(type){
+			case ITEM_TYPE_HTML:
+				return "articles";
+			case ITEM_TYPE_THUMB:
+				return "thumbnails";
+			default:
+				return "images";
+		}
+	}
+	
+	/**
+	 * @return The number of downloads that currently run at once, for diagnostics
+	 */
+	public synchronized int getConcurrencyWindow(){
+		return window.getWindow();
+	}
+	
+	/**
+	 * @return The download throughput in bytes per second, or 0 if it hasn't been measured yet
+	 */
+	public synchronized double getThroughput(){
+		return window.getThroughput();
+	}
+	
+	/**
+	 * @return The average time a download takes in milliseconds
+	 */
+	public synchronized double getAverageLatency(){
+		return window.getAverageLatency();
+	}
+	
+	/**
+	 * Prepares the download of an item, so it can be aborted if the load is stopped
+	 */
+	synchronized Transfer openTransfer(QueueItem item){
+		Transfer transfer = transport.newTransfer(item.getUrl(), deadlinesFor(item.getType()));
+		if(keepDownloading){
+			transfers.add(transfer);
+		}
+		else{
+			transfer.abort(); //the load was stopped after the item was taken
+		}
+		return transfer;
+	}
+	
+	synchronized void closeTransfer(Transfer transfer){
+		transfers.remove(transfer);
+	}
+	
+	static Deadlines deadlinesFor(int type){
+		switch(type){
 			case ITEM_TYPE_HTML:
-				downloadHtml(item);
-				break;
+				return HTML_DEADLINES;
 			case ITEM_TYPE_THUMB:
-				downloadThumbnail(item);
-				break;
-			case ITEM_TYPE_IMAGE:
-				downloadImage(item);
-				break;
+				return THUMB_DEADLINES;
+			default:
+				return IMAGE_DEADLINES;
 		}
 	}
 	
-	private void downloadHtml(QueueItem item){
+	private void downloadItem(QueueItem item){
+		Transfer transfer;
+		try{
+			transfer = openTransfer(item);
+		}
+		catch(IllegalArgumentException e){
+			downloadFailed(item, e); //the url can't be requested
+			return;
+		}
 		try{
-			byte[] html = HtmlParser.getPage(item.getUrl()); //load the page
-			//before we report this download, check if it was a specific request
-			if(item.wasSpecificallyRequested())
-				handler.itemDownloadComplete(true, item.getItemId(), item.getType(), html);
-			else
-				handler.itemDownloadComplete(false, item.getItemId(), item.getType(), html);
+			switch(item.getType()){
+				case ITEM_TYPE_HTML:
+					downloadHtml(item, transfer);
+					break;
+				case ITEM_TYPE_THUMB:
+					downloadThumbnail(item, transfer);
+					break;
+				case ITEM_TYPE_IMAGE:
+					downloadImage(item, transfer);
+					break;
+			}
 		}
-		catch(Exception e){
-			numErrors ++; //increment the number of errors
-			if(numErrors > ERROR_FAIL_THRESHOLD){
-				//report the error
-				//FIXME need to work out if internet error or not
-				handler.reportError(ReaderActivity.ERROR_TYPE_INTERNET, "There was an error retrieving articles.", e.toString());
-				stopDownload(); //give up loading
+		catch(RuntimeException e){
+			//a bug rather than a failed download, so it mustn't count against the host
+			Log.e("BBC News Reader", "Unexpected error downloading " + item.getUrl(), e);
+			synchronized(this){
+				breakerFor(item.getHost()).probeFinished();
+				forget(item);
 			}
 		}
+		finally {
+			closeTransfer(transfer);
+		}
 	}
 	
-	private void downloadThumbnail(QueueItem item){
+	private void downloadHtml(QueueItem item, Transfer transfer){
+		File page = null;
+		long length;
+		long start = System.currentTimeMillis();
+		try{
+			page = createDownloadFile();
+			length = HtmlParser.savePage(transfer, page); //load the page
+		}
+		catch(IOException e){
+			if(page != null){
+				page.delete();
+			}
+			downloadFailed(item, e);
+			return;
+		}
+		ArrayList<QueueItem> requests = downloadSucceeded(item, length, start);
+		//the handler moves the file it is given, so each other item needs its own copy
+		File[] pages = new File[requests.size()];
+		pages[0] = page;
 		try{
-			URL url = new URL(item.getUrl());
-			byte[] thumb = ImageDownloader.getImage(url); //load the image
-			handler.itemDownloadComplete(false, item.getItemId(), item.getType(), thumb);
+			for(int i = 1; i < pages.length; i++){
+				try{
+					pages[i] = createDownloadFile();
+					Downloader.copyFile(page, pages[i]);
+				}
+				catch(IOException e){
+					Log.w("BBC News Reader", "Failed to copy " + item.getUrl() + " for item " + requests.get(i).getItemId(), e);
+					if(pages[i] != null){
+						pages[i].delete();
+						pages[i] = null;
+					}
+				}
+			}
+			for(int i = 0; i < pages.length; i++){
+				if(pages[i] != null){
+					QueueItem request = requests.get(i);
+					//before we report this download, check if it was a specific request
+					deliver(request.wasSpecificallyRequested(), request.getItemId(), item.getType(), pages[i]);
+				}
+			}
 		}
-		catch(Exception e){
-			numErrors ++; //increment the number of errors
-			if(numErrors > ERROR_FAIL_THRESHOLD){
-				//report the error
-				//FIXME need to work out if internet error or not
-				handler.reportError(ReaderActivity.ERROR_TYPE_INTERNET, "There was an error retrieving thumbnails.", e.toString());
-				stopDownload(); //give up loading
+		finally{
+			//a file the handler didn't move into place is still ours
+			for(int i = 0; i < pages.length; i++){
+				if(pages[i] != null){
+					pages[i].delete();
+				}
 			}
 		}
 	}
 	
-	private void downloadImage(QueueItem item){
+	private void downloadThumbnail(QueueItem item, Transfer transfer){
+		byte[] thumb;
+		long start = System.currentTimeMillis();
 		try{
-			URL url = new URL(item.getUrl());
-			byte[] image = ImageDownloader.getImage(url); //load the image
-			handler.itemDownloadComplete(false, item.getItemId(), item.getType(), image);
+			thumb = ImageDownloader.getImage(transfer); //load the image
 		}
-		catch(Exception e){
-			numErrors ++; //increment the number of errors
-			if(numErrors > ERROR_FAIL_THRESHOLD){
-				//report the error
-				handler.reportError(ReaderActivity.ERROR_TYPE_INTERNET, "There was an error retrieving images.", e.toString());
-				e.printStackTrace();
-			}
+		catch(IOException e){
+			downloadFailed(item, e);
+			return;
+		}
+		ArrayList<QueueItem> requests = downloadSucceeded(item, thumb.length, start);
+		for(int i = 0; i < requests.size(); i++){
+			deliver(false, requests.get(i).getItemId(), item.getType(), thumb);
+		}
+	}
+	
+	private void downloadImage(QueueItem item, Transfer transfer){
+		byte[] image;
+		long start = System.currentTimeMillis();
+		try{
+			image = ImageDownloader.getImage(transfer); //load the image
+		}
+		catch(IOException e){
+			downloadFailed(item, e);
+			return;
+		}
+		ArrayList<QueueItem> requests = downloadSucceeded(item, image.length, start);
+		for(int i = 0; i < requests.size(); i++){
+			deliver(false, requests.get(i).getItemId(), item.getType(), image);
+		}
+	}
+	
+	/**
+	 * Passes a finished download to the handler. The handler failing to store it is logged, it isn't a failed download.
+	 */
+	private void deliver(boolean specificallyRequested, int itemId, int type, Object download){
+		try{
+			handler.itemDownloadComplete(specificallyRequested, itemId, type, download);
+		}
+		catch(RuntimeException e){
+			Log.e("BBC News Reader", "Failed to store " + describe(type) + " for item " + itemId, e);
+		}
+	}
+	
+	private File createDownloadFile() throws StorageException {
+		try{
+			return File.createTempFile(DOWNLOAD_PREFIX, DOWNLOAD_SUFFIX, downloadDirectory);
+		}
+		catch(IOException e){
+			throw new StorageException("Couldn't create a file in " + downloadDirectory, e);
 		}
 	}
 	
-	private void itemQueued(){
-		//check if we need to start the download thread
-		if(!shouldKeepDownloading()){
-			//start the download thread
-			setQueueEmpty(false);
-			setKeepDownloading(true);
+	private synchronized void itemQueued(){
+		//check if this is the start of a new load
+		if(!keepDownloading){
+			queueEmpty = false;
+			keepDownloading = true;
 			noError = true;
-			downloadThread = new Thread(this);
-			downloadThread.start();
+			errorReported = false;
+			breakers.clear(); //give every host a fresh start
+			window.restart(System.currentTimeMillis());
+		}
+		//wake the idle workers, then start new ones if there is more to do than they can take
+		notifyAll();
+		int idleWorkers = workers - activeWorkers;
+		while(workers < maxWorkers && idleWorkers < downloadQueue.size()){
+			workers++;
+			idleWorkers++;
+			new Thread(new Worker()).start();
 		}
 	}
 	
@@ -137,35 +715,40 @@ public class WebManager implements Runnable {
 		addToQueue(url, type, itemId, type);
 	}
 	
-	public void addToQueue(String url, int type, int itemId, int priority){
+	public synchronized void addToQueue(String url, int type, int itemId, int priority){
 		QueueItem queueItem = new QueueItem(url, type, itemId, priority);
-		getQueue().add(queueItem);
+		String key = urlKey(url, type);
+		QueueItem queued = urlItems.get(key);
+		if(queued != null){
+			//the url is already queued or downloading, share that download instead of starting another
+			queued.attach(queueItem);
+			if(priority > queued.getBasePriority()){
+				queued.setBasePriority(priority);
+			}
+			int hinted = hintedPriority(queued);
+			if(hinted > queued.getPriority()){
+				raisePriority(queued, hinted);
+			}
+		}
+		else{
+			//items on the screen go ahead of the prefetch
+			queueItem.setPriority(hintedPriority(queueItem));
+			//an item that is already queued keeps its place, unless this priority is higher
+			if(getQueue().add(queueItem)){
+				urlItems.put(key, queueItem);
+			}
+		}
 		itemQueued();
 	}
 	
-	public void loadNow(String url, int type, int itemId){
+	public synchronized void loadNow(String url, int type, int itemId){
 		//check if a load is in progress
 		if(shouldKeepDownloading()){
-			//loop through the queue to find the item we want, then boost its priority
-			boolean itemExists = false; //set to true if the item was actually in the queue
-			//FIXME looping efficient? probably doesn't matter as only on user command
-			Iterator<QueueItem> iterator = getQueue().iterator();
-			while(iterator.hasNext()){
-				//check the id of this item
-				QueueItem item = iterator.next();
-				if(item.getItemId() == itemId){
-					//boost the priority of this item
-					item.setPriority(QueueItem.PRIORITY_DOWNLOAD_NOW);
-					itemExists = true; //we found the item
-				}
-			}
-			//if the item wasn't found, create it and set its priority high
-			if(!itemExists){
-				addToQueue(url, type, itemId, QueueItem.PRIORITY_DOWNLOAD_NOW);
-			}
+			//move the item to the front of the queue, or add it there if it isn't queued
+			addToQueue(url, type, itemId, QueueItem.PRIORITY_DOWNLOAD_NOW);
 		}
 		else{
-			//clear the queue, just in case
+			//clear the queue, just in case, nothing is running so nothing is aborted under the lock
 			emptyQueue();
 			//add the item to the queue, this will automatically start the download
 			addToQueue(url, type, itemId, QueueItem.PRIORITY_DOWNLOAD_NOW);
@@ -173,51 +756,91 @@ public class WebManager implements Runnable {
 	}
 	
 	public void emptyQueue(){
-		//check if a download is in progress
-		if(shouldKeepDownloading())
-			stopDownload(); //first stop downloading
-		getQueue().clear(); //empty the queue
+		ArrayList<Transfer> running;
+		synchronized(this){
+			//check if a download is in progress
+			running = halt(); //first stop downloading
+			getQueue().clear(); //empty the queue
+			retries.clear();
+			urlItems.clear();
+		}
+		abort(running);
 	}
 	
 	public void stopDownload(){
-		//check if the download is going
-		if(shouldKeepDownloading()){
-			//try and stop the download
-			noError = false;
-			setKeepDownloading(false); //this will stop it after the current file
-			emptyQueue(); //empty the queue
+		boolean wasDownloading;
+		ArrayList<Transfer> running;
+		synchronized(this){
+			wasDownloading = keepDownloading;
+			running = halt();
 		}
-		else{
+		abort(running);
+		if(!wasDownloading){
 			//as a load isn't in progress we can report that we have finished
 			handler.fullLoadComplete(false);
 		}
 	}
 	
-	public void run(){
-		//check this hasn't been called in error
-		if(getQueue().size() > 0){
-			//keep downloading if we should
-			while(shouldKeepDownloading()){
-				//retrieve the head of the queue and load it
-				downloadItem(getQueue().poll());
-				//check if the queue is empty now
-				if(getQueue().size() == 0){
-					setQueueEmpty(true); //flag the queue as empty
-					setKeepDownloading(false); //stop the loop
-				}
-			}
-			handler.fullLoadComplete(noError); //report that the load is complete
+	/**
+	 * Stops the workers and empties the queue, the caller must abort the running downloads after releasing the lock
+	 * @return The running downloads, or null if a load wasn't in progress
+	 */
+	private ArrayList<Transfer> halt(){
+		//check if the download is going
+		if(!keepDownloading){
+			return null;
 		}
-		else{
-			//as the queue was empty, we should flag it
-			setQueueEmpty(true);
+		//try and stop the download
+		noError = false;
+		keepDownloading = false; //this will stop the workers
+		downloadQueue.clear(); //empty the queue
+		retries.clear();
+		urlItems.clear();
+		notifyAll(); //wake the idle workers so they finish
+		return new ArrayList<Transfer>(transfers);
+	}
+	
+	/**
+	 * Closes the connections under the running downloads, so the workers stop now instead of after their files. Aborting
+	 * can block on the connection, so it is never done while holding the lock.
+	 */
+	private void abort(ArrayList<Transfer> running){
+		if(running != null){
+			for(int i = 0; i < running.size(); i++){
+				running.get(i).abort();
+			}
 		}
 	}
 	
-	public WebManager(ResourceInterface handler){
+	/**
+	 * @param downloadDirectory The directory pages are downloaded to, they are passed to the handler as files
+	 */
+	public WebManager(ResourceInterface handler, HttpTransport transport, File downloadDirectory){
+		this(handler, transport, downloadDirectory, DEFAULT_WORKERS, DEFAULT_MAX_PER_HOST);
+	}
+	
+	/**
+	 * @param downloadDirectory The directory pages are downloaded to, they are passed to the handler as files
+	 * @param maxWorkers The most items that are downloaded at once
+	 * @param maxPerHost The number of items that are downloaded at once from one host
+	 */
+	public WebManager(ResourceInterface handler, HttpTransport transport, File downloadDirectory, int maxWorkers, int maxPerHost){
 		this.handler = handler;
+		this.transport = transport;
+		this.downloadDirectory = downloadDirectory;
+		clearDownloads();
+		this.maxWorkers = maxWorkers;
+		this.maxPerHost = maxPerHost;
+		this.window = new ConcurrencyWindow(1, maxWorkers);
 		setQueueEmpty(true);
-		downloadQueue = new PriorityQueue<QueueItem>();
-		numErrors = 0; //no errors yet
+		downloadQueue = new DownloadQueue();
+		activePerHost = new HashMap<String, Integer>();
+		breakers = new HashMap<String, CircuitBreaker>();
+		retries = new ArrayList<QueueItem>();
+		urlItems = new HashMap<String, QueueItem>();
+		transfers = new ArrayList<Transfer>();
+		visibleItems = new HashSet<Integer>();
+		upcomingItems = new HashSet<Integer>();
+		random = new Random();
 	}
 }
@@ -0,0 +1,87 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Internal input stream which fails as soon as more than a maximum number of
+ * bytes have been read. Closing this stream does not close the underlying
+ * stream. Only a single thread must use this stream.
+ */
+final class BoundedInputStream extends FilterInputStream {
+
+  private final int max;
+  private long count;
+
+  BoundedInputStream(InputStream in, int max) {
+    super(in);
+    this.max = max;
+  }
+
+  @Override
+  public int read() throws IOException {
+    final int b = super.read();
+    if (b >= 0) {
+      count(1);
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) throws IOException {
+    final int read = super.read(bytes, offset, length);
+    if (read > 0) {
+      count(read);
+    }
+    return read;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    final long skipped = super.skip(n);
+    count(skipped);
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  /**
+   * The caller closes the underlying stream.
+   */
+  @Override
+  public void close() {}
+
+  private void count(long read) throws IOException {
+    count += read;
+    if (count > max) {
+      throw tooLarge(max);
+    }
+  }
+
+  /**
+   * Returns the exception which signals that an RSS feed is larger than the
+   * maximum number of bytes.
+   */
+  static IOException tooLarge(int max) {
+    return new IOException("RSS feed is larger than " + max + " bytes.");
+  }
+
+}
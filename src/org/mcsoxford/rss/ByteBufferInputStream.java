@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Internal input stream which reads the remaining bytes of a buffer. The
+ * position of the original buffer is not changed. Only a single thread must
+ * use this stream.
+ */
+final class ByteBufferInputStream extends InputStream {
+
+  private final ByteBuffer buffer;
+
+  ByteBufferInputStream(ByteBuffer buffer) {
+    if (buffer == null) {
+      throw new IllegalArgumentException("RSS feed must not be null.");
+    }
+
+    this.buffer = buffer.duplicate();
+  }
+
+  @Override
+  public int read() {
+    if (!buffer.hasRemaining()) {
+      return -1;
+    }
+
+    return buffer.get() & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) {
+    if (length == 0) {
+      return 0;
+    } else if (!buffer.hasRemaining()) {
+      return -1;
+    }
+
+    final int count = Math.min(length, buffer.remaining());
+    buffer.get(bytes, offset, count);
+    return count;
+  }
+
+  @Override
+  public long skip(long count) {
+    final int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+    buffer.position(buffer.position() + skipped);
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    return buffer.remaining();
+  }
+
+}
@@ -16,37 +16,306 @@
 
 package org.mcsoxford.rss;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-
 /**
- * Internal helper class for date conversions.
- * 
+ * Internal thread-safe helper class for date conversions.
+ *
  * @author Mr Horn
  */
 final class Dates {
 
+  private static final int MILLIS_PER_MINUTE = 60 * 1000;
+
   /**
-   * @see <a href="http://www.ietf.org/rfc/rfc0822.txt">RFC 822</a>
+   * Three letter English month names in calendar order.
+   */
+  private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+
+  /**
+   * Offsets in minutes of named time zones which are not listed in RFC 822
+   * but which are unknown to, or ambiguous in, {@link java.util.TimeZone}.
+   */
+  private static final java.util.Map<String, Integer> ZONES;
+
+  /**
+   * Offsets in minutes of other named time zones. Looking up a
+   * {@link java.util.TimeZone} is slow, so each name is resolved only once.
    */
-  private static final SimpleDateFormat RFC822 = new SimpleDateFormat(
-      "EEE, dd MMM yyyy HH:mm:ss Z", java.util.Locale.ENGLISH);
+  private static final java.util.concurrent.ConcurrentHashMap<String, Integer> ZONE_CACHE =
+      new java.util.concurrent.ConcurrentHashMap<String, Integer>();
+
+  static {
+    ZONES = new java.util.HashMap<String, Integer>(4);
+    ZONES.put("BST", 60); // British Summer Time, not Bangladesh
+    ZONES.put("CET", 60);
+    ZONES.put("CEST", 120);
+  }
 
   /* Hide constructor */
   private Dates() {}
-  
+
   /**
    * Parses string as an RFC 822 date/time.
-   * 
+   *
    * @throws RSSFault if the string is not a valid RFC 822 date/time
+   * @see #parseRfc822Millis(String)
    */
   static java.util.Date parseRfc822(String date) {
-    try {
-      return RFC822.parse(date);
-    } catch (ParseException e) {
-      throw new RSSFault(e);
+    return new java.util.Date(parseRfc822Millis(date));
+  }
+
+  /**
+   * Parses string as an RFC 822 or RFC 1123 date/time and returns the number
+   * of milliseconds since January 1, 1970, 00:00:00 GMT. The day of the week,
+   * the seconds and the time zone are optional; a missing time zone is taken
+   * to be GMT. Two-digit years are interpreted as in RFC 2822.
+   *
+   * @throws RSSFault if the string is not a valid RFC 822 date/time
+   * @see <a href="http://www.ietf.org/rfc/rfc0822.txt">RFC 822</a>
+   */
+  static long parseRfc822Millis(String date) {
+    if (date == null) {
+      throw new RSSFault("RFC 822 date/time must not be null.");
     }
+
+    final int length = date.length();
+    int i = skipWhitespace(date, 0);
+
+    // optional day of the week, e.g. "Mon," or "Monday,"
+    if (i < length && isLetter(date.charAt(i))) {
+      while (i < length && isLetter(date.charAt(i))) {
+        i++;
+      }
+      if (i < length && date.charAt(i) == ',') {
+        i++;
+      }
+      i = skipWhitespace(date, i);
+    }
+
+    // day of the month
+    int start = i;
+    i = skipDigits(date, i);
+    final int day = field(date, start, i, 1, 2);
+    i = skipWhitespace(date, i);
+
+    // month name, only the first three letters are significant
+    final int month = month(date, i);
+    if (month < 0) {
+      throw invalid(date);
+    }
+    while (i < length && isLetter(date.charAt(i))) {
+      i++;
+    }
+    i = skipWhitespace(date, i);
+
+    // year
+    start = i;
+    i = skipDigits(date, i);
+    int year;
+    if (i - start == 2) {
+      year = field(date, start, i, 2, 2);
+      year += year < 50 ? 2000 : 1900;
+    } else {
+      year = field(date, start, i, 4, 4);
+    }
+    i = skipWhitespace(date, i);
+
+    // hours, minutes and optional seconds
+    start = i;
+    i = skipDigits(date, i);
+    final int hour = field(date, start, i, 1, 2);
+    if (i >= length || date.charAt(i) != ':') {
+      throw invalid(date);
+    }
+    start = ++i;
+    i = skipDigits(date, i);
+    final int minute = field(date, start, i, 2, 2);
+    int second = 0;
+    if (i < length && date.charAt(i) == ':') {
+      start = ++i;
+      i = skipDigits(date, i);
+      second = field(date, start, i, 2, 2);
+    }
+    i = skipWhitespace(date, i);
+
+    if (day < 1 || day > 31 || hour > 23 || minute > 59 || second > 60) {
+      throw invalid(date);
+    }
+
+    // time zone
+    final int end = trimEnd(date, i);
+    final int offset = offset(date, i, end);
+
+    final long days = epochDays(year, month + 1, day);
+    final long seconds = ((days * 24 + hour) * 60 + minute) * 60 + second;
+    return seconds * 1000 - (long) offset * MILLIS_PER_MINUTE;
   }
 
-}
+  /**
+   * Returns the time zone offset in minutes of the characters between
+   * {@code start} and {@code end}, or zero if there are none.
+   */
+  private static int offset(String date, int start, int end) {
+    if (start == end) {
+      // missing time zone, assume GMT
+      return 0;
+    }
+
+    final char sign = date.charAt(start);
+    if (sign == '+' || sign == '-') {
+      if (end - start != 5) {
+        throw invalid(date);
+      }
+      final int hhmm = field(date, start + 1, end, 4, 4);
+      final int minutes = (hhmm / 100) * 60 + hhmm % 100;
+      return sign == '-' ? -minutes : minutes;
+    }
+
+    for (int i = start; i < end; i++) {
+      if (!isLetter(date.charAt(i))) {
+        throw invalid(date);
+      }
+    }
+
+    // common zones are compared in place to avoid allocating a substring
+    if (regionMatches(date, start, end, "GMT") || regionMatches(date, start, end, "UT")
+        || regionMatches(date, start, end, "UTC") || end - start == 1) {
+      // RFC 2822 treats the military zones as -0000 since their meaning is
+      // inverted in RFC 822
+      return 0;
+    } else if (end - start == 3 && date.charAt(start + 2) == 'T') {
+      final int standard;
+      switch (date.charAt(start)) {
+      case 'E':
+        standard = -5 * 60;
+        break;
+      case 'C':
+        standard = -6 * 60;
+        break;
+      case 'M':
+        standard = -7 * 60;
+        break;
+      case 'P':
+        standard = -8 * 60;
+        break;
+      default:
+        return namedOffset(date.substring(start, end));
+      }
+
+      switch (date.charAt(start + 1)) {
+      case 'S':
+        return standard;
+      case 'D':
+        return standard + 60;
+      default:
+        return namedOffset(date.substring(start, end));
+      }
+    }
+
+    return namedOffset(date.substring(start, end));
+  }
+
+  /**
+   * Returns the offset in minutes of a named time zone. Unknown zones are
+   * treated as GMT, as recommended by RFC 2822.
+   */
+  private static int namedOffset(String zone) {
+    Integer offset = ZONES.get(zone);
+    if (offset != null) {
+      return offset.intValue();
+    }
+
+    offset = ZONE_CACHE.get(zone);
+    if (offset == null) {
+      // TimeZone falls back to GMT for unknown IDs
+      offset = Integer.valueOf(java.util.TimeZone.getTimeZone(zone).getRawOffset() / MILLIS_PER_MINUTE);
+      ZONE_CACHE.putIfAbsent(zone, offset);
+    }
 
+    return offset.intValue();
+  }
+
+  /**
+   * Returns the zero-based month of the three letter English month name at
+   * the specified position, or {@code -1} if there is none.
+   */
+  private static int month(String date, int i) {
+    for (int month = 0; month < 12; month++) {
+      if (date.regionMatches(true, i, MONTHS, month * 3, 3)) {
+        return month;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the number of days between January 1, 1970 and the specified
+   * date of the proleptic Gregorian calendar.
+   */
+  private static long epochDays(int year, int month, int day) {
+    final int y = month <= 2 ? year - 1 : year;
+    final int era = (y >= 0 ? y : y - 399) / 400;
+    final int yearOfEra = y - era * 400;
+    final int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097L + dayOfEra - 719468;
+  }
+
+  /**
+   * Returns the value of the decimal digits between {@code start} and
+   * {@code end}, which must number between {@code min} and {@code max}.
+   */
+  private static int field(String date, int start, int end, int min, int max) {
+    if (end - start < min || end - start > max) {
+      throw invalid(date);
+    }
+
+    int value = 0;
+    for (int i = start; i < end; i++) {
+      final char c = date.charAt(i);
+      if (!isDigit(c)) {
+        throw invalid(date);
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  private static int skipDigits(String date, int i) {
+    while (i < date.length() && isDigit(date.charAt(i))) {
+      i++;
+    }
+    return i;
+  }
+
+  private static int skipWhitespace(String date, int i) {
+    while (i < date.length() && date.charAt(i) <= ' ') {
+      i++;
+    }
+    return i;
+  }
+
+  private static int trimEnd(String date, int start) {
+    int end = date.length();
+    while (end > start && date.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    return end;
+  }
+
+  private static boolean regionMatches(String date, int start, int end, String zone) {
+    return end - start == zone.length() && date.regionMatches(true, start, zone, 0, end - start);
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isLetter(char c) {
+    return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+  }
+
+  private static RSSFault invalid(String date) {
+    return new RSSFault("Invalid RFC 822 date/time: " + date);
+  }
+
+}
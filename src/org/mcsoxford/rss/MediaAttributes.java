@@ -47,5 +47,28 @@ final class MediaAttributes {
     return Integer.parseInt(value);
   }
 
+  /**
+   * Returns the attribute of the pull parser's current start tag with the
+   * specified name as a string. The return value is {@code null} if no
+   * attribute with such name exists.
+   */
+  static String stringValue(org.xmlpull.v1.XmlPullParser parser, String name) {
+    return parser.getAttributeValue(null, name);
+  }
+
+  /**
+   * Returns the attribute of the pull parser's current start tag with the
+   * specified name as an integer. The {@code defaultValue} is returned if no
+   * attribute with such name exists.
+   */
+  static int intValue(org.xmlpull.v1.XmlPullParser parser, String name, int defaultValue) {
+    final String value = stringValue(parser, name);
+    if(value == null) {
+      return defaultValue;
+    }
+
+    return Integer.parseInt(value);
+  }
+
 }
 
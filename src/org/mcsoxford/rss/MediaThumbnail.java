@@ -24,15 +24,36 @@ package org.mcsoxford.rss;
  */
 public final class MediaThumbnail {
 
-  private final android.net.Uri url;
+  private final String url;
   private final int height;
   private final int width;
 
   /**
-   * Returns the URL of the thumbnail.
+   * URL which is parsed from {@link #url} on first use.
+   */
+  private android.net.Uri uri;
+
+  /**
+   * Returns the URL of the thumbnail. The URL is parsed into a {@code Uri}
+   * the first time this method is called.
    * The return value is never {@code null}.
+   *
+   * @see #getUrlString()
    */
   public android.net.Uri getUrl() {
+    if (uri == null) {
+      uri = android.net.Uri.parse(url);
+    }
+
+    return uri;
+  }
+
+  /**
+   * Returns the URL of the thumbnail as it appears in the RSS feed. Unlike
+   * {@link #getUrl()}, this method does not parse the URL.
+   * The return value is never {@code null}.
+   */
+  public String getUrlString() {
     return url;
   }
 
@@ -51,7 +72,7 @@ public final class MediaThumbnail {
   }
 
   /* Internal constructor for RSSHandler */
-  MediaThumbnail(android.net.Uri url, int height, int width) {
+  MediaThumbnail(String url, int height, int width) {
     this.url = url;
     this.height = height;
     this.width = width;
@@ -61,7 +82,7 @@ public final class MediaThumbnail {
    * Returns the thumbnail's URL as a string.
    */
   public String toString() {
-    return url.toString();
+    return url;
   }
 
   /**
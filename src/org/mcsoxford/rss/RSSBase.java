@@ -25,11 +25,22 @@ import java.util.ArrayList;
  */
 abstract class RSSBase {
 
+  /**
+   * Value of {@link #getPubDateMillis()} if the publication date is
+   * unspecified. A real date can be zero, so zero cannot be used.
+   */
+  public static final long NO_PUBDATE = Long.MIN_VALUE;
+
   private String title;
-  private android.net.Uri link;
+  private String link;
+
+  /**
+   * Link which is parsed from {@link #link} on first use.
+   */
+  private android.net.Uri linkUri;
   private String description;
   private java.util.List<String> categories;
-  private java.util.Date pubdate;
+  private long pubdate = NO_PUBDATE;
 
   /**
    * Specify initial capacity for the List which contains the category names.
@@ -47,7 +58,26 @@ abstract class RSSBase {
     return description;
   }
 
+  /**
+   * Returns the link or {@code null} if unspecified. The link is parsed into
+   * a {@code Uri} the first time this method is called.
+   *
+   * @see #getLinkString()
+   */
   public android.net.Uri getLink() {
+    if (linkUri == null && link != null) {
+      linkUri = android.net.Uri.parse(link);
+    }
+
+    return linkUri;
+  }
+
+  /**
+   * Returns the link as it appears in the RSS feed or {@code null} if
+   * unspecified. Unlike {@link #getLink()}, this method does not parse the
+   * link.
+   */
+  public String getLinkString() {
     return link;
   }
 
@@ -59,16 +89,40 @@ abstract class RSSBase {
     return java.util.Collections.unmodifiableList(categories);
   }
 
+  /**
+   * Returns the publication date or {@code null} if unspecified.
+   */
   public java.util.Date getPubDate() {
+    if (!hasPubDate()) {
+      return null;
+    }
+
+    return new java.util.Date(pubdate);
+  }
+
+  /**
+   * Returns the publication date in milliseconds since January 1, 1970,
+   * 00:00:00 GMT or {@link #NO_PUBDATE} if unspecified. Unlike
+   * {@link #getPubDate()}, this method does not allocate.
+   */
+  public long getPubDateMillis() {
     return pubdate;
   }
 
+  /**
+   * Returns {@code true} if the feed or item specifies a publication date.
+   */
+  public boolean hasPubDate() {
+    return pubdate != NO_PUBDATE;
+  }
+
   void setTitle(String title) {
     this.title = title;
   }
 
-  void setLink(android.net.Uri link) {
+  void setLink(String link) {
     this.link = link;
+    this.linkUri = null;
   }
 
   void setDescription(String description) {
@@ -83,7 +137,7 @@ abstract class RSSBase {
     this.categories.add(category);
   }
 
-  void setPubDate(java.util.Date pubdate) {
+  void setPubDate(long pubdate) {
     this.pubdate = pubdate;
   }
 
@@ -0,0 +1,266 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Internal helper which assembles an {@link RSSFeed} from the events of an
+ * XML parser. All RSS parsers share this class so that they store RSS content
+ * in the same way. The text of an element is collected in a single character
+ * buffer which is reused for every element, so the only objects allocated
+ * while parsing are the RSS data structures and their strings. Only a single
+ * thread must use an RSS builder.
+ */
+final class RSSBuilder {
+
+  /**
+   * Initial capacity of the text buffer. The buffer grows to fit the longest
+   * element in the feed, which is usually an item description, but never
+   * beyond {@link RSSConfig#maxTextLength}.
+   */
+  private static final int TEXT_CAPACITY = 512;
+
+  private final RSSConfig config;
+
+  /**
+   * If not {@code null}, then parsed items are passed to the listener instead
+   * of being added to the {@link #feed}.
+   */
+  private final RSSItemListener listener;
+
+  /**
+   * Reference is never {@code null}.
+   */
+  private final RSSFeed feed = new RSSFeed();
+
+  /**
+   * Reference is {@code null} unless started to parse &lt;item&gt; element.
+   */
+  private RSSItem item;
+
+  /**
+   * Characters of the text element which is being parsed.
+   */
+  private char[] text;
+
+  private int length;
+
+  /**
+   * Number of items which have been parsed.
+   */
+  private int items;
+
+  /**
+   * Number of items which have been started, including invalid items.
+   */
+  private int started;
+
+  /**
+   * Set if the current item has invalid content and must be skipped.
+   */
+  private boolean invalid;
+
+  /**
+   * Instantiate an RSS builder.
+   *
+   * @param config average number of RSS item &lt;category&gt; and
+   *          &lt;media:thumbnail&gt; elements
+   * @param listener receives the parsed RSS items, or {@code null} to add
+   *          them to the RSS feed
+   */
+  RSSBuilder(RSSConfig config, RSSItemListener listener) {
+    this.config = config;
+    this.listener = listener;
+    this.text = new char[Math.min(TEXT_CAPACITY, config.maxTextLength)];
+  }
+
+  /**
+   * Returns the RSS feed which has been built so far.
+   */
+  RSSFeed feed() {
+    return feed;
+  }
+
+  /**
+   * Enter the scope of a new &lt;item&gt; element.
+   */
+  void startItem() {
+    item = new RSSItem(config.categoryAvg, config.thumbnailAvg);
+    invalid = false;
+    started++;
+  }
+
+  /**
+   * Leave the scope of the current &lt;item&gt; element and (re)enter the
+   * &lt;channel&gt; scope. A stray end tag without an item is ignored.
+   *
+   * @return {@code false} if the listener does not want any more items or if
+   *         the maximum number of items has been reached, {@code true}
+   *         otherwise
+   */
+  boolean endItem() {
+    final RSSItem parsed = item;
+    if (parsed == null) {
+      return true;
+    }
+
+    item = null;
+
+    if (invalid) {
+      feed.getDiagnostics().addSkippedItem();
+      return true;
+    }
+
+    items++;
+
+    if (listener == null) {
+      feed.addItem(parsed);
+    } else if (!listener.itemParsed(parsed)) {
+      return false;
+    }
+
+    return items < config.maxItems;
+  }
+
+  /**
+   * Discard the buffered text so that a new text element can be parsed.
+   */
+  void clearText() {
+    length = 0;
+  }
+
+  /**
+   * Append a character to the text buffer. Characters beyond the maximum
+   * text length are discarded.
+   */
+  void appendText(char c) {
+    if (length == text.length) {
+      if (length == config.maxTextLength) {
+        return;
+      }
+      ensureCapacity(length + 1);
+    }
+    text[length++] = c;
+  }
+
+  /**
+   * Append characters to the text buffer. Characters beyond the maximum text
+   * length are discarded.
+   */
+  void appendText(char[] ch, int start, int count) {
+    count = Math.min(count, config.maxTextLength - length);
+    ensureCapacity(length + count);
+    System.arraycopy(ch, start, text, length, count);
+    length += count;
+  }
+
+  /**
+   * Set the field of the current RSS item or, outside of an item, of the RSS
+   * feed to the buffered text.
+   *
+   * @param element one of the content elements of {@link RSSElements}
+   */
+  void setContent(int element) {
+    final RSSBase target = item == null ? feed : item;
+    final String value = text();
+
+    switch (element) {
+    case RSSElements.TITLE:
+      target.setTitle(value);
+      break;
+    case RSSElements.DESCRIPTION:
+      target.setDescription(value);
+      break;
+    case RSSElements.LINK:
+      target.setLink(value);
+      break;
+    case RSSElements.PUBDATE:
+      try {
+        target.setPubDate(Dates.parseRfc822Millis(value));
+      } catch (RSSFault e) {
+        invalid(e);
+      }
+      break;
+    case RSSElements.CATEGORY:
+      target.addCategory(value);
+      break;
+    }
+  }
+
+  /**
+   * Handles invalid content of the current item or, outside of an item, of
+   * the RSS feed. In lenient mode the problem is recorded in the diagnostics
+   * of the RSS feed and the current item is skipped. Otherwise, the problem
+   * is thrown.
+   */
+  void invalid(RuntimeException problem) {
+    if (!config.lenient) {
+      throw problem;
+    }
+
+    final String message = problem.getMessage() == null ? problem.toString() : problem.getMessage();
+    if (item == null) {
+      feed.getDiagnostics().addProblem(-1, message);
+    } else {
+      feed.getDiagnostics().addProblem(started - 1, message);
+      invalid = true;
+    }
+  }
+
+  /**
+   * Add a &lt;media:thumbnail&gt; element to the current item. Elements
+   * outside an item or without an URL are ignored. The URL is truncated in
+   * the same way as element text.
+   */
+  void addThumbnail(String url, int height, int width) {
+    if (item == null || url == null) {
+      return;
+    }
+
+    if (url.length() > config.maxTextLength) {
+      url = url.substring(0, config.maxTextLength);
+    }
+    item.addThumbnail(new MediaThumbnail(url, height, width));
+  }
+
+  /**
+   * Add a &lt;media:content&gt; element to the current item if it is an
+   * image. The content is assumed to be an image unless its medium or, if
+   * there is no medium, its MIME type says otherwise.
+   */
+  void addContent(String url, int height, int width, String medium, String type) {
+    if (medium != null ? !"image".equals(medium) : type != null && !type.startsWith("image/")) {
+      return;
+    }
+
+    addThumbnail(url, height, width);
+  }
+
+  /**
+   * Returns the buffered text as a string.
+   */
+  String text() {
+    return new String(text, 0, length);
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > text.length) {
+      final char[] larger = new char[Math.min(Math.max(capacity, text.length * 2),
+          config.maxTextLength)];
+      System.arraycopy(text, 0, larger, 0, length);
+      text = larger;
+    }
+  }
+
+}
@@ -38,7 +38,61 @@ public final class RSSConfig {
   final byte thumbnailAvg;
 
   /**
-   * Instantiate an RSS configuration with the specified parameters.
+   * Maximum number of RSS items. Parsing stops after this many items and the
+   * remaining items are discarded.
+   */
+  final int maxItems;
+
+  /**
+   * Maximum number of characters of a text element or attribute value. Longer
+   * text is truncated.
+   */
+  final int maxTextLength;
+
+  /**
+   * Maximum size in bytes of an RSS feed document. Parsing fails with an
+   * {@link RSSFault} as soon as a larger document is detected.
+   */
+  final int maxDocumentBytes;
+
+  /**
+   * Maximum number of entity references which the XML parser expands, not
+   * counting the predefined entities and character references. Parsing fails
+   * with an {@link RSSFault} when more entities are expanded. The pull parser
+   * cannot count expansions, so it rejects any document with a DTD.
+   */
+  final int maxEntityExpansions;
+
+  /**
+   * If {@code true}, then RSS items with invalid content are skipped and
+   * reported in the {@link RSSDiagnostics} of the RSS feed. Otherwise, the
+   * first invalid element fails the whole feed.
+   */
+  final boolean lenient;
+
+  /**
+   * Default limit of the number of RSS items.
+   */
+  public static final int DEFAULT_MAX_ITEMS = 1000;
+
+  /**
+   * Default limit of the number of characters of a text element.
+   */
+  public static final int DEFAULT_MAX_TEXT_LENGTH = 64 * 1024;
+
+  /**
+   * Default limit of the size of an RSS feed document in bytes.
+   */
+  public static final int DEFAULT_MAX_DOCUMENT_BYTES = 8 * 1024 * 1024;
+
+  /**
+   * Default limit of the number of entity expansions.
+   */
+  public static final int DEFAULT_MAX_ENTITY_EXPANSIONS = 1000;
+
+  /**
+   * Instantiate an RSS configuration with the specified parameters and
+   * default limits.
    * 
    * @param categoryAvg average number of RSS item &lt;category&gt; elements in
    *          a typical RSS feed
@@ -46,16 +100,71 @@ public final class RSSConfig {
    *          elements in a typical RSS feed
    */
   public RSSConfig(byte categoryAvg, byte thumbnailAvg) {
+    this(categoryAvg, thumbnailAvg, DEFAULT_MAX_ITEMS, DEFAULT_MAX_TEXT_LENGTH,
+        DEFAULT_MAX_DOCUMENT_BYTES, DEFAULT_MAX_ENTITY_EXPANSIONS);
+  }
+
+  /**
+   * Instantiate an RSS configuration with the specified parameters and
+   * limits. The limits bound the memory and time which a huge or hostile RSS
+   * feed can consume.
+   * 
+   * @param categoryAvg average number of RSS item &lt;category&gt; elements in
+   *          a typical RSS feed
+   * @param thumbnailAvg average number of RSS item &lt;metia:thumbnail&gt;
+   *          elements in a typical RSS feed
+   * @param maxItems maximum number of RSS items which are parsed
+   * @param maxTextLength maximum number of characters of a text element
+   * @param maxDocumentBytes maximum size in bytes of an RSS feed
+   * @param maxEntityExpansions maximum number of expanded entity references
+   * @throws IllegalArgumentException if a limit is not positive
+   */
+  public RSSConfig(byte categoryAvg, byte thumbnailAvg, int maxItems,
+      int maxTextLength, int maxDocumentBytes, int maxEntityExpansions) {
+    this(categoryAvg, thumbnailAvg, maxItems, maxTextLength, maxDocumentBytes,
+        maxEntityExpansions, false);
+  }
+
+  /**
+   * Instantiate an RSS configuration with the specified parameters, limits
+   * and error handling. A lenient RSS parser skips RSS items with invalid
+   * content, such as an unparsable &lt;pubDate&gt;, and records them in
+   * {@link RSSFeed#getDiagnostics()}. XML which is not well-formed still
+   * fails the whole feed.
+   * 
+   * @param categoryAvg average number of RSS item &lt;category&gt; elements in
+   *          a typical RSS feed
+   * @param thumbnailAvg average number of RSS item &lt;metia:thumbnail&gt;
+   *          elements in a typical RSS feed
+   * @param maxItems maximum number of RSS items which are parsed
+   * @param maxTextLength maximum number of characters of a text element
+   * @param maxDocumentBytes maximum size in bytes of an RSS feed
+   * @param maxEntityExpansions maximum number of expanded entity references
+   * @param lenient {@code true} to skip invalid RSS items instead of failing
+   * @throws IllegalArgumentException if a limit is not positive
+   */
+  public RSSConfig(byte categoryAvg, byte thumbnailAvg, int maxItems,
+      int maxTextLength, int maxDocumentBytes, int maxEntityExpansions,
+      boolean lenient) {
+    if (maxItems <= 0 || maxTextLength <= 0 || maxDocumentBytes <= 0
+        || maxEntityExpansions <= 0) {
+      throw new IllegalArgumentException("RSS limits must be positive.");
+    }
+
     this.categoryAvg = categoryAvg;
     this.thumbnailAvg = thumbnailAvg;
+    this.maxItems = maxItems;
+    this.maxTextLength = maxTextLength;
+    this.maxDocumentBytes = maxDocumentBytes;
+    this.maxEntityExpansions = maxEntityExpansions;
+    this.lenient = lenient;
   }
 
   /**
    * Instantiate an RSS configuration with default values.
    */
   public RSSConfig() {
-    this.categoryAvg = 3;
-    this.thumbnailAvg = 2;
+    this((byte) 3, (byte) 2);
   }
 
 }
@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Problems which a lenient RSS parser has found in an RSS feed. Each problem
+ * is described by a message which names the RSS item, counting from zero in
+ * document order, or the channel. Only a single thread must modify the
+ * diagnostics.
+ * @see RSSConfig
+ */
+public final class RSSDiagnostics {
+
+  /**
+   * Reference is {@code null} unless a problem has been found.
+   */
+  private java.util.List<String> problems;
+
+  private int skippedItems;
+
+  /* Internal constructor for RSSFeed */
+  RSSDiagnostics() {}
+
+  /**
+   * Determines if the RSS parser has found any problems.
+   */
+  public boolean hasProblems() {
+    return problems != null;
+  }
+
+  /**
+   * Returns an unmodifiable list of problem descriptions in document order.
+   * The return value is never {@code null}.
+   */
+  public java.util.List<String> getProblems() {
+    if (problems == null) {
+      return java.util.Collections.emptyList();
+    }
+
+    return java.util.Collections.unmodifiableList(problems);
+  }
+
+  /**
+   * Returns the number of RSS items which have been skipped because of a
+   * problem.
+   */
+  public int getSkippedItems() {
+    return skippedItems;
+  }
+
+  /**
+   * Returns the problem descriptions, one per line.
+   */
+  public String toString() {
+    final StringBuilder builder = new StringBuilder();
+    for (String problem : getProblems()) {
+      builder.append(problem).append('\n');
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Records a problem with the RSS item at the specified position in the
+   * feed, or with the channel if the position is negative.
+   */
+  void addProblem(int item, String message) {
+    if (problems == null) {
+      problems = new java.util.ArrayList<String>(4);
+    }
+
+    problems.add((item < 0 ? "channel: " : "item " + item + ": ") + message);
+  }
+
+  void addSkippedItem() {
+    skippedItems++;
+  }
+
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Internal symbol table for the RSS 2.0 elements which are supported by the
+ * RSS parsers. Element names are mapped to small integer constants so that
+ * parsers can dispatch on them with a {@code switch} statement instead of a
+ * hash table lookup.
+ */
+final class RSSElements {
+
+  /**
+   * Element which is not stored in an RSS feed or item.
+   */
+  static final int UNSUPPORTED = 0;
+
+  static final int ITEM = 1;
+  static final int TITLE = 2;
+  static final int DESCRIPTION = 3;
+  static final int LINK = 4;
+  static final int PUBDATE = 5;
+  static final int CATEGORY = 6;
+  static final int MEDIA_THUMBNAIL = 7;
+  static final int MEDIA_CONTENT = 8;
+
+  /* Hide constructor */
+  private RSSElements() {}
+
+  /**
+   * Returns the constant of the element with the specified qualified name, or
+   * {@link #UNSUPPORTED} if the element is not supported. The length of the
+   * name selects at most two candidates, so each lookup does at most two
+   * string comparisons and never allocates.
+   */
+  static int lookup(String name) {
+    switch (name.length()) {
+    case 4:
+      if ("item".equals(name)) {
+        return ITEM;
+      } else if ("link".equals(name)) {
+        return LINK;
+      }
+      break;
+    case 5:
+      if ("title".equals(name)) {
+        return TITLE;
+      }
+      break;
+    case 7:
+      if ("pubDate".equals(name)) {
+        return PUBDATE;
+      }
+      break;
+    case 8:
+      if ("category".equals(name)) {
+        return CATEGORY;
+      }
+      break;
+    case 11:
+      if ("description".equals(name)) {
+        return DESCRIPTION;
+      }
+      break;
+    case 13:
+      if ("media:content".equals(name)) {
+        return MEDIA_CONTENT;
+      }
+      break;
+    case 15:
+      if ("media:thumbnail".equals(name)) {
+        return MEDIA_THUMBNAIL;
+      }
+      break;
+    }
+    return UNSUPPORTED;
+  }
+
+  /**
+   * Returns the constant of the element whose qualified name is encoded in
+   * the specified range of an UTF-8 byte array, or {@link #UNSUPPORTED} if
+   * the element is not supported.
+   *
+   * @see #lookup(String)
+   */
+  static int lookup(byte[] bytes, int start, int length) {
+    switch (length) {
+    case 4:
+      if (matches(bytes, start, "item")) {
+        return ITEM;
+      } else if (matches(bytes, start, "link")) {
+        return LINK;
+      }
+      break;
+    case 5:
+      if (matches(bytes, start, "title")) {
+        return TITLE;
+      }
+      break;
+    case 7:
+      if (matches(bytes, start, "pubDate")) {
+        return PUBDATE;
+      }
+      break;
+    case 8:
+      if (matches(bytes, start, "category")) {
+        return CATEGORY;
+      }
+      break;
+    case 11:
+      if (matches(bytes, start, "description")) {
+        return DESCRIPTION;
+      }
+      break;
+    case 13:
+      if (matches(bytes, start, "media:content")) {
+        return MEDIA_CONTENT;
+      }
+      break;
+    case 15:
+      if (matches(bytes, start, "media:thumbnail")) {
+        return MEDIA_THUMBNAIL;
+      }
+      break;
+    }
+    return UNSUPPORTED;
+  }
+
+  /**
+   * Compares the bytes at the specified position with an ASCII name. The
+   * caller ensures that the array holds enough bytes.
+   */
+  static boolean matches(byte[] bytes, int start, String name) {
+    for (int i = 0; i < name.length(); i++) {
+      if (bytes[start + i] != name.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Determines if the element is a media element whose attributes describe
+   * an image variant of an RSS item.
+   */
+  static boolean isMedia(int element) {
+    return element == MEDIA_THUMBNAIL || element == MEDIA_CONTENT;
+  }
+
+  /**
+   * Determines if the element has text content which is stored in an RSS feed
+   * or item.
+   */
+  static boolean isContent(int element) {
+    return element >= TITLE && element <= CATEGORY;
+  }
+
+}
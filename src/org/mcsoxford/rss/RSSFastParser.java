@@ -0,0 +1,1018 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Thread-safe RSS parser SPI implementation which scans the UTF-8 bytes of an
+ * RSS feed directly, without a character decoder or an XML parser library. It
+ * recognises the same subset of RSS 2.0 elements as {@link RSSParser}.
+ * <p>
+ * Well-formed UTF-8 feeds without a document type declaration, such as the
+ * BBC News feeds, are parsed by the fast path. If the feed uses another
+ * character encoding, declares a DTD, references an unknown entity or is not
+ * well-formed, then the bytes which have been read so far and the rest of the
+ * stream are handed to {@link RSSParser} instead. Items which have already
+ * been passed to an {@link RSSItemListener} are not passed again.
+ * <p>
+ * A feed stream is scanned through a buffer which only keeps the bytes from
+ * the start of the current element, text or markup declaration, so a large
+ * feed does not have to fit in memory. The bytes before the document element
+ * are always kept. The fallback is only possible while the buffer still holds
+ * the start of the document; afterwards a feed which the fast path cannot
+ * parse fails with an {@link RSSFault}. Such a feed is not well-formed in
+ * practice, and the SAX parser would reject it too. Byte buffers, including
+ * memory-mapped files, are scanned in place without copying their bytes.
+ */
+public final class RSSFastParser implements RSSParserSPI {
+
+  /**
+   * Initial size of the byte buffer, which only grows if a single token does
+   * not fit.
+   */
+  private static final int BUFFER_CAPACITY = 16 * 1024;
+
+  private static final int DEFAULT_DIMENSION = -1;
+
+  private final RSSConfig config;
+
+  /**
+   * Parser for feeds which the fast path does not support.
+   */
+  private final RSSParser fallback;
+
+  /**
+   * Instantiate a fast parser which is configured with the specified RSS
+   * configuration.
+   */
+  public RSSFastParser(RSSConfig config) {
+    this.config = config;
+    this.fallback = new RSSParser(config);
+  }
+
+  /**
+   * Instantiate a fast parser with default RSS configuration values.
+   */
+  public RSSFastParser() {
+    this(new RSSConfig());
+  }
+
+  /**
+   * Parses input stream as RSS feed. It is the responsibility of the caller to
+   * close the RSS feed input stream.
+   *
+   * @param feed RSS 2.0 feed input stream
+   * @return in-memory representation of RSS feed
+   * @throws RSSFault if an unrecoverable parse error occurs
+   */
+  public RSSFeed parse(InputStream feed) {
+    return parse(feed, null);
+  }
+
+  /**
+   * Parses input stream as RSS feed and passes each RSS item to the listener.
+   * It is the responsibility of the caller to close the RSS feed input stream.
+   *
+   * @param feed RSS 2.0 feed input stream
+   * @param listener receives the RSS items, or {@code null} to add them to
+   *          the returned feed instead
+   * @return in-memory representation of RSS feed
+   * @throws RSSFault if an unrecoverable parse error occurs
+   */
+  public RSSFeed parse(InputStream feed, RSSItemListener listener) {
+    if (feed == null) {
+      throw new IllegalArgumentException("RSS feed must not be null.");
+    }
+
+    final ReplayListener replay = listener == null ? null : new ReplayListener(listener);
+    final Scanner scanner = new Scanner(feed, new RSSBuilder(config, replay),
+        new byte[BUFFER_CAPACITY], config.maxDocumentBytes);
+    try {
+      return scanner.parse();
+    } catch (Unsupported e) {
+      if (scanner.base > 0) {
+        // the start of the document has been discarded
+        throw new RSSFault(e);
+      }
+
+      // start again with the SAX parser, skipping items which have already
+      // been passed to the listener
+      if (replay != null) {
+        replay.replay();
+      }
+
+      final InputStream document = new SequenceInputStream(new ByteArrayInputStream(
+          scanner.buffer, 0, scanner.limit), feed);
+      return fallback.parse(document, replay);
+    } catch (IOException e) {
+      throw new RSSFault(e);
+    }
+  }
+
+  /**
+   * Parses the remaining bytes of a buffer as RSS feed. The bytes are scanned
+   * in place and the position of the buffer is not changed.
+   *
+   * @param feed RSS 2.0 feed bytes
+   * @return in-memory representation of RSS feed
+   * @throws RSSFault if an unrecoverable parse error occurs
+   */
+  public RSSFeed parse(ByteBuffer feed) {
+    Resources.checkSize(feed, config);
+
+    try {
+      return new Scanner(feed, new RSSBuilder(config, null)).parse();
+    } catch (Unsupported e) {
+      return fallback.parse(feed);
+    } catch (IOException e) {
+      // there is no stream to read from
+      throw new RSSFault(e);
+    }
+  }
+
+  /**
+   * Parses a memory-mapped file as RSS feed. It is the responsibility of the
+   * caller to close the file channel.
+   *
+   * @param feed channel of a file which contains an RSS 2.0 feed
+   * @return in-memory representation of RSS feed
+   * @throws RSSFault if the file cannot be mapped or if an unrecoverable parse
+   *           error occurs
+   */
+  public RSSFeed parse(FileChannel feed) {
+    return parse(Resources.map(feed, config));
+  }
+
+  /**
+   * Signals that the fast path cannot parse the feed. The exception carries
+   * no stack trace.
+   */
+  private static final class Unsupported extends RuntimeException {
+
+    /**
+     * Unsupported serialization
+     */
+    private static final long serialVersionUID = 1L;
+
+    Unsupported(String message) {
+      super(message);
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+
+  }
+
+  /**
+   * Counts the items which have been passed to the listener so that they can
+   * be skipped when the feed is parsed again by the fallback parser.
+   */
+  private static final class ReplayListener implements RSSItemListener {
+
+    private final RSSItemListener listener;
+    private int delivered;
+    private int skip;
+
+    ReplayListener(RSSItemListener listener) {
+      this.listener = listener;
+    }
+
+    public boolean itemParsed(RSSItem item) {
+      if (skip > 0) {
+        skip--;
+        return true;
+      }
+
+      delivered++;
+      return listener.itemParsed(item);
+    }
+
+    void replay() {
+      skip = delivered;
+      delivered = 0;
+    }
+
+  }
+
+  /**
+   * Scans the bytes of a single feed. Bytes are read from the stream only
+   * when they are needed, so items are passed to the listener while the rest
+   * of the feed is still downloading.
+   */
+  private static final class Scanner {
+
+    /**
+     * Stream which fills the {@link #buffer}, or {@code null} if all bytes
+     * are in the buffer.
+     */
+    private final InputStream in;
+
+    private final RSSBuilder builder;
+
+    /**
+     * The bytes which have been read from the stream and are still needed,
+     * or {@code null} if the bytes are scanned in the {@link #data} buffer.
+     */
+    byte[] buffer;
+
+    /**
+     * Position of the first byte in the {@link #buffer}. It stays {@code 0}
+     * until bytes are discarded.
+     */
+    int base;
+
+    /**
+     * Position of the first byte which must be kept when the buffer is full.
+     * It is the start of the current token once the document element has
+     * started.
+     */
+    private int mark;
+
+    /**
+     * Buffer which is scanned in place if it has no accessible array.
+     */
+    private final ByteBuffer data;
+
+    /**
+     * Position of the first byte of the document.
+     */
+    private final int start;
+
+    /**
+     * Maximum number of bytes which are read from the stream.
+     */
+    private final int maxBytes;
+
+    /**
+     * Position after the last byte which is available.
+     */
+    int limit;
+
+    /**
+     * Position of the next byte to scan.
+     */
+    private int pos;
+
+    /**
+     * Copy of the name of an element in the {@link #data} buffer.
+     */
+    private byte[] name;
+
+    /**
+     * Copies of the names of the open elements, since their bytes may have
+     * been discarded by the time the end tag is scanned.
+     */
+    private byte[] names = new byte[256];
+
+    private int namesLength;
+
+    /**
+     * Offsets in {@link #names} and lengths of the names of the open
+     * elements.
+     */
+    private int[] open = new int[32];
+
+    private int depth;
+
+    private boolean root;
+
+    /**
+     * Constant of the {@link RSSElements} text element whose characters are
+     * being buffered, or {@link RSSElements#UNSUPPORTED} otherwise.
+     */
+    private int element = RSSElements.UNSUPPORTED;
+
+    Scanner(InputStream in, RSSBuilder builder, byte[] buffer, int maxBytes) {
+      this.in = in;
+      this.builder = builder;
+      this.buffer = buffer;
+      this.data = null;
+      this.start = 0;
+      this.maxBytes = maxBytes;
+    }
+
+    Scanner(ByteBuffer feed, RSSBuilder builder) {
+      this.in = null;
+      this.builder = builder;
+      if (feed.hasArray()) {
+        this.buffer = feed.array();
+        this.data = null;
+        this.start = feed.arrayOffset() + feed.position();
+        this.limit = feed.arrayOffset() + feed.limit();
+      } else {
+        this.buffer = null;
+        this.data = feed;
+        this.start = feed.position();
+        this.limit = feed.limit();
+      }
+      this.pos = start;
+      this.maxBytes = limit - start;
+    }
+
+    RSSFeed parse() throws IOException {
+      prolog();
+
+      for (int c = at(pos); c >= 0; c = at(pos)) {
+        if (root) {
+          // the bytes before the document element are kept for the fallback
+          mark = pos;
+        }
+        if (c != '<') {
+          text();
+        } else if (!markup()) {
+          // the listener does not want any more items
+          return builder.feed();
+        }
+      }
+
+      if (depth != 0 || !root) {
+        throw new Unsupported("Unexpected end of document");
+      }
+
+      return builder.feed();
+    }
+
+    /**
+     * Skips a UTF-8 byte order mark and checks the encoding in the XML
+     * declaration.
+     */
+    private void prolog() throws IOException {
+      final int first = at(start);
+      if (first == 0xEF && at(start + 1) == 0xBB && at(start + 2) == 0xBF) {
+        pos = start + 3;
+      } else if (first == 0xFE || first == 0xFF || first == 0x00 || (first == '<' && at(start + 1) == 0x00)) {
+        throw new Unsupported("Unsupported character encoding");
+      }
+
+      if (at(pos) == '<' && at(pos + 1) == '?' && at(pos + 2) == 'x' && at(pos + 3) == 'm'
+          && at(pos + 4) == 'l' && whitespace(at(pos + 5))) {
+        final int pseudoAttributes = pos + 5;
+        pos = find(pseudoAttributes, "?>");
+        final String encoding = declaration(pseudoAttributes, pos, "encoding");
+        if (encoding != null && !"UTF-8".equalsIgnoreCase(encoding)) {
+          throw new Unsupported("Unsupported character encoding: " + encoding);
+        }
+        pos += 2;
+      }
+    }
+
+    /**
+     * Returns the value of a pseudo-attribute of the XML declaration between
+     * the specified positions, or {@code null} if there is none.
+     */
+    private String declaration(int start, int end, String name) throws IOException {
+      for (int i = start; i + name.length() < end; i++) {
+        if (matches(i, name)) {
+          int j = i + name.length();
+          while (j < end && whitespace(at(j))) {
+            j++;
+          }
+          if (j == end || at(j) != '=') {
+            break;
+          }
+          j++;
+          while (j < end && whitespace(at(j))) {
+            j++;
+          }
+          if (j == end || (at(j) != '"' && at(j) != '\'')) {
+            break;
+          }
+          final int quote = at(j);
+          final int value = ++j;
+          while (j < end && at(j) != quote) {
+            j++;
+          }
+          if (j == end) {
+            break;
+          }
+          return ascii(value, j);
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Scans character data up to the next markup. The characters are only
+     * decoded inside a supported text element.
+     */
+    private void text() throws IOException {
+      if (element == RSSElements.UNSUPPORTED) {
+        for (int c = at(pos); c >= 0 && c != '<'; c = at(++pos)) {
+          if (depth == 0 && !whitespace(c)) {
+            throw new Unsupported("Text outside of the document element");
+          }
+        }
+        return;
+      }
+
+      for (int c = at(pos); c >= 0 && c != '<'; c = at(pos)) {
+        pos++;
+        if (c == '&') {
+          reference();
+        } else if (c == '\r') {
+          // normalize line breaks as required by XML
+          builder.appendText('\n');
+          if (at(pos) == '\n') {
+            pos++;
+          }
+        } else if (c >= 0x80) {
+          decode(c);
+        } else if (c < 0x20 && c != '\t' && c != '\n') {
+          throw new Unsupported("Invalid character");
+        } else {
+          builder.appendText((char) c);
+        }
+      }
+    }
+
+    /**
+     * Scans the markup which starts at the current position.
+     *
+     * @return {@code false} if the listener does not want any more items,
+     *         {@code true} otherwise
+     */
+    private boolean markup() throws IOException {
+      final int c = at(pos + 1);
+      if (c == '/') {
+        return endTag();
+      } else if (c == '!') {
+        if (at(pos + 2) == '-' && at(pos + 3) == '-') {
+          pos = find(pos + 4, "-->") + 3;
+        } else if (at(pos + 2) == '[' && at(pos + 3) == 'C' && at(pos + 4) == 'D'
+            && at(pos + 5) == 'A' && at(pos + 6) == 'T' && at(pos + 7) == 'A' && at(pos + 8) == '[') {
+          cdata();
+        } else {
+          // document type declarations may define entities
+          throw new Unsupported("Unsupported markup declaration");
+        }
+      } else if (c == '?') {
+        pos = find(pos + 2, "?>") + 2;
+      } else {
+        return startTag();
+      }
+      return true;
+    }
+
+    /**
+     * Scans a CDATA section. Its characters are only decoded inside a
+     * supported text element.
+     */
+    private void cdata() throws IOException {
+      if (depth == 0) {
+        throw new Unsupported("CDATA outside of the document element");
+      }
+
+      final int start = pos + 9;
+      final int end = find(start, "]]>");
+      pos = end + 3;
+
+      if (element == RSSElements.UNSUPPORTED) {
+        return;
+      }
+
+      for (int i = start; i < end;) {
+        final int c = at(i++);
+        if (c == '\r') {
+          builder.appendText('\n');
+          if (i < end && at(i) == '\n') {
+            i++;
+          }
+        } else if (c >= 0x80) {
+          final int saved = pos;
+          pos = i;
+          decode(c);
+          i = pos;
+          pos = saved;
+        } else if (c < 0x20 && c != '\t' && c != '\n') {
+          throw new Unsupported("Invalid character");
+        } else {
+          builder.appendText((char) c);
+        }
+      }
+    }
+
+    /**
+     * Scans a start tag or an empty element tag and its attributes.
+     */
+    private boolean startTag() throws IOException {
+      pos++;
+      final int name = pos;
+      pos = name(pos);
+      final int length = pos - name;
+
+      if (depth == 0 && root) {
+        throw new Unsupported("More than one document element");
+      }
+      root = true;
+      push(name, length);
+
+      final int started = lookup(name, length);
+      final boolean media = RSSElements.isMedia(started);
+      final boolean content = started == RSSElements.MEDIA_CONTENT;
+      String url = null;
+      int height = DEFAULT_DIMENSION;
+      int width = DEFAULT_DIMENSION;
+      String medium = null;
+      String type = null;
+      NumberFormatException invalid = null;
+
+      // the text buffer is free because a start tag always ends buffering
+      element = RSSElements.UNSUPPORTED;
+
+      boolean empty = false;
+      while (true) {
+        final boolean separated = skipWhitespace();
+        final int c = at(pos);
+        if (c == '>') {
+          pos++;
+          break;
+        } else if (c == '/') {
+          if (at(pos + 1) != '>') {
+            throw new Unsupported("Malformed tag");
+          }
+          pos += 2;
+          empty = true;
+          break;
+        } else if (!separated) {
+          throw new Unsupported("Malformed tag");
+        }
+
+        final int attribute = pos;
+        pos = name(pos);
+        final int attributeLength = pos - attribute;
+        skipWhitespace();
+        if (at(pos) != '=') {
+          throw new Unsupported("Malformed attribute");
+        }
+        pos++;
+        skipWhitespace();
+
+        final int quote = at(pos);
+        if (quote != '"' && quote != '\'') {
+          throw new Unsupported("Malformed attribute");
+        }
+        pos++;
+
+        if (media && attributeLength == 3 && matches(attribute, "url")) {
+          url = stringValue(quote);
+        } else if (media && attributeLength == 5 && matches(attribute, "width")) {
+          try {
+            width = intValue(quote);
+          } catch (NumberFormatException e) {
+            invalid = e;
+          }
+        } else if (media && attributeLength == 6 && matches(attribute, "height")) {
+          try {
+            height = intValue(quote);
+          } catch (NumberFormatException e) {
+            invalid = e;
+          }
+        } else if (content && attributeLength == 6 && matches(attribute, "medium")) {
+          medium = stringValue(quote);
+        } else if (content && attributeLength == 4 && matches(attribute, "type")) {
+          type = stringValue(quote);
+        } else {
+          skipValue(quote);
+        }
+      }
+
+      switch (started) {
+      case RSSElements.UNSUPPORTED:
+        break;
+      case RSSElements.ITEM:
+        builder.startItem();
+        break;
+      case RSSElements.MEDIA_THUMBNAIL:
+        if (invalid != null) {
+          builder.invalid(invalid);
+        } else {
+          builder.addThumbnail(url, height, width);
+        }
+        break;
+      case RSSElements.MEDIA_CONTENT:
+        if (invalid != null) {
+          builder.invalid(invalid);
+        } else {
+          builder.addContent(url, height, width, medium, type);
+        }
+        break;
+      default:
+        element = started;
+        builder.clearText();
+        break;
+      }
+
+      if (empty) {
+        depth--;
+        return endElement(started);
+      }
+      return true;
+    }
+
+    /**
+     * Scans an end tag which must match the most recent start tag.
+     */
+    private boolean endTag() throws IOException {
+      pos += 2;
+      final int name = pos;
+      pos = name(pos);
+      final int length = pos - name;
+      skipWhitespace();
+      if (at(pos) != '>') {
+        throw new Unsupported("Malformed end tag");
+      }
+      pos++;
+
+      if (depth == 0) {
+        throw new Unsupported("Unexpected end tag");
+      }
+      depth--;
+      final int open = this.open[depth * 2];
+      if (this.open[depth * 2 + 1] != length) {
+        throw new Unsupported("Mismatched end tag");
+      }
+      for (int i = 0; i < length; i++) {
+        if ((names[open + i] & 0xFF) != at(name + i)) {
+          throw new Unsupported("Mismatched end tag");
+        }
+      }
+      namesLength = open;
+
+      return endElement(lookup(name, length));
+    }
+
+    private boolean endElement(int ended) {
+      if (element != RSSElements.UNSUPPORTED) {
+        builder.setContent(element);
+        element = RSSElements.UNSUPPORTED;
+        return true;
+      }
+
+      return ended != RSSElements.ITEM || builder.endItem();
+    }
+
+    /**
+     * Scans an attribute value up to the closing quote and returns it.
+     */
+    private String stringValue(int quote) throws IOException {
+      builder.clearText();
+      attributeValue(quote);
+      return builder.text();
+    }
+
+    /**
+     * Decodes an attribute value up to the closing quote into the text
+     * buffer of the RSS builder.
+     */
+    private void attributeValue(int quote) throws IOException {
+      for (int c = at(pos); c != quote; c = at(pos)) {
+        pos++;
+        if (c < 0 || c == '<') {
+          throw new Unsupported("Malformed attribute");
+        } else if (c == '&') {
+          reference();
+        } else if (c == '\r') {
+          // normalize line breaks and white space as required by XML
+          builder.appendText(' ');
+          if (at(pos) == '\n') {
+            pos++;
+          }
+        } else if (c == '\n' || c == '\t') {
+          builder.appendText(' ');
+        } else if (c >= 0x80) {
+          decode(c);
+        } else if (c < 0x20) {
+          throw new Unsupported("Invalid character");
+        } else {
+          builder.appendText((char) c);
+        }
+      }
+      pos++;
+    }
+
+    /**
+     * Scans an integer attribute value. Short non-negative decimal values are
+     * converted without allocating, others are decoded and parsed in the same
+     * way as by the SAX handler.
+     *
+     * @throws NumberFormatException if the value is not an integer
+     */
+    private int intValue(int quote) throws IOException {
+      final int start = pos;
+      int value = 0;
+      int digits = 0;
+      for (int c = at(pos); c != quote; c = at(++pos)) {
+        if (c < '0' || c > '9' || ++digits > 9) {
+          pos = start;
+          return Integer.parseInt(stringValue(quote));
+        }
+        value = value * 10 + (c - '0');
+      }
+      if (digits == 0) {
+        pos = start;
+        return Integer.parseInt(stringValue(quote));
+      }
+      pos++;
+      return value;
+    }
+
+    private void skipValue(int quote) throws IOException {
+      for (int c = at(pos); c != quote; c = at(++pos)) {
+        if (c < 0 || c == '<') {
+          throw new Unsupported("Malformed attribute");
+        }
+      }
+      pos++;
+    }
+
+    /**
+     * Decodes an entity or character reference after the ampersand into the
+     * text buffer of the RSS builder.
+     */
+    private void reference() throws IOException {
+      final int start = pos;
+      int c = at(pos);
+      while (c >= 0 && c != ';' && pos - start < 10) {
+        c = at(++pos);
+      }
+      if (c != ';') {
+        throw new Unsupported("Malformed reference");
+      }
+      final int length = pos - start;
+      pos++;
+
+      if (at(start) == '#') {
+        codePoint(characterReference(start + 1, length - 1));
+      } else if (length == 3 && matches(start, "amp")) {
+        builder.appendText('&');
+      } else if (length == 2 && matches(start, "lt")) {
+        builder.appendText('<');
+      } else if (length == 2 && matches(start, "gt")) {
+        builder.appendText('>');
+      } else if (length == 4 && matches(start, "quot")) {
+        builder.appendText('"');
+      } else if (length == 4 && matches(start, "apos")) {
+        builder.appendText('\'');
+      } else {
+        throw new Unsupported("Unknown entity");
+      }
+    }
+
+    private int characterReference(int start, int length) throws IOException {
+      final int radix = length > 0 && at(start) == 'x' ? 16 : 10;
+      if (radix == 16) {
+        start++;
+        length--;
+      }
+      if (length == 0) {
+        throw new Unsupported("Malformed character reference");
+      }
+
+      int value = 0;
+      for (int i = start; i < start + length; i++) {
+        final int digit = Character.digit((char) at(i), radix);
+        if (digit < 0) {
+          throw new Unsupported("Malformed character reference");
+        }
+        value = value * radix + digit;
+      }
+      return value;
+    }
+
+    /**
+     * Decodes a multi-byte UTF-8 sequence whose first byte has already been
+     * scanned.
+     */
+    private void decode(int first) throws IOException {
+      if (first >= 0xC2 && first <= 0xDF) {
+        codePoint(((first & 0x1F) << 6) | continuation());
+      } else if (first >= 0xE0 && first <= 0xEF) {
+        final int second = continuation();
+        if ((first == 0xE0 && second < 0x20) || (first == 0xED && second >= 0x20)) {
+          // overlong encoding or surrogate
+          throw new Unsupported("Malformed UTF-8");
+        }
+        codePoint(((first & 0x0F) << 12) | (second << 6) | continuation());
+      } else if (first >= 0xF0 && first <= 0xF4) {
+        final int second = continuation();
+        final int codePoint = ((first & 0x07) << 18) | (second << 12)
+            | (continuation() << 6) | continuation();
+        if (codePoint < 0x10000) {
+          throw new Unsupported("Malformed UTF-8");
+        }
+        codePoint(codePoint);
+      } else {
+        throw new Unsupported("Malformed UTF-8");
+      }
+    }
+
+    private int continuation() throws IOException {
+      final int c = at(pos);
+      if ((c & 0xC0) != 0x80) {
+        throw new Unsupported("Malformed UTF-8");
+      }
+      pos++;
+      return c & 0x3F;
+    }
+
+    /**
+     * Appends a character which must be allowed in an XML document.
+     */
+    private void codePoint(int c) {
+      if (c < 0x20 ? (c != '\t' && c != '\n' && c != '\r')
+          : (c >= 0xD800 && c <= 0xDFFF) || c == 0xFFFE || c == 0xFFFF || c > 0x10FFFF) {
+        throw new Unsupported("Invalid character");
+      }
+
+      if (c < 0x10000) {
+        builder.appendText((char) c);
+      } else {
+        c -= 0x10000;
+        builder.appendText((char) (0xD800 + (c >> 10)));
+        builder.appendText((char) (0xDC00 + (c & 0x3FF)));
+      }
+    }
+
+    /**
+     * Returns the end of the element or attribute name at the specified
+     * position.
+     */
+    private int name(int i) throws IOException {
+      final int start = i;
+      for (int c = at(i); c >= 0 && !whitespace(c) && c != '>' && c != '/' && c != '='; c = at(++i)) {
+        if (c == '<' || c == '"' || c == '\'' || c == '&') {
+          throw new Unsupported("Malformed name");
+        }
+      }
+      if (i == start) {
+        throw new Unsupported("Malformed name");
+      }
+      return i;
+    }
+
+    private boolean skipWhitespace() throws IOException {
+      final int start = pos;
+      while (whitespace(at(pos))) {
+        pos++;
+      }
+      return pos > start;
+    }
+
+    /**
+     * Returns the position of the ASCII string at or after the specified
+     * position.
+     */
+    private int find(int i, String end) throws IOException {
+      final char first = end.charAt(0);
+      for (int c = at(i); c >= 0; c = at(++i)) {
+        if (c == first && at(i + end.length() - 1) >= 0 && matches(i, end)) {
+          return i;
+        }
+      }
+      throw new Unsupported("Unexpected end of document");
+    }
+
+    private void push(int name, int length) throws IOException {
+      if (depth * 2 == open.length) {
+        final int[] larger = new int[open.length * 2];
+        System.arraycopy(open, 0, larger, 0, open.length);
+        open = larger;
+      }
+      if (namesLength + length > names.length) {
+        final byte[] larger = new byte[Math.max(names.length * 2, namesLength + length)];
+        System.arraycopy(names, 0, larger, 0, namesLength);
+        names = larger;
+      }
+      for (int i = 0; i < length; i++) {
+        names[namesLength + i] = (byte) at(name + i);
+      }
+      open[depth * 2] = namesLength;
+      open[depth * 2 + 1] = length;
+      namesLength += length;
+      depth++;
+    }
+
+    private String ascii(int start, int end) throws IOException {
+      final char[] chars = new char[end - start];
+      for (int i = start; i < end; i++) {
+        chars[i - start] = (char) at(i);
+      }
+      return new String(chars);
+    }
+
+    /**
+     * Compares the bytes at the specified position with an ASCII string. The
+     * caller ensures that the bytes are available.
+     */
+    private boolean matches(int i, String string) throws IOException {
+      if (data == null) {
+        return RSSElements.matches(buffer, i - base, string);
+      }
+
+      for (int j = 0; j < string.length(); j++) {
+        if (at(i + j) != string.charAt(j)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns the {@link RSSElements} constant of the element name at the
+     * specified position.
+     */
+    private int lookup(int start, int length) {
+      if (data == null) {
+        return RSSElements.lookup(buffer, start - base, length);
+      }
+
+      // supported names are short, so longer names need not be copied
+      if (name == null) {
+        name = new byte[16];
+      }
+      if (length > name.length) {
+        return RSSElements.UNSUPPORTED;
+      }
+      for (int i = 0; i < length; i++) {
+        name[i] = data.get(start + i);
+      }
+      return RSSElements.lookup(name, 0, length);
+    }
+
+    /**
+     * Returns the byte at the specified position, reading from the stream if
+     * necessary, or {@code -1} at the end of the document.
+     */
+    private int at(int i) throws IOException {
+      if (i < limit) {
+        return (data == null ? buffer[i - base] : data.get(i)) & 0xFF;
+      }
+
+      return fill(i);
+    }
+
+    /**
+     * Reads from the stream until the byte at the specified position is
+     * available and returns it, or {@code -1} at the end of the stream.
+     */
+    private int fill(int i) throws IOException {
+      if (in == null) {
+        return -1;
+      }
+
+      while (i >= limit) {
+        if (limit - base == buffer.length) {
+          // drop the bytes before the mark, and only grow the buffer if that
+          // would free less than half of it
+          final int keep = limit - mark;
+          final byte[] target;
+          if (keep > buffer.length / 2) {
+            // one more byte than the maximum detects a document which is too large
+            target = new byte[(int) Math.min(buffer.length * 2L, maxBytes + 1L - mark)];
+          } else {
+            target = buffer;
+          }
+          System.arraycopy(buffer, mark - base, target, 0, keep);
+          buffer = target;
+          base = mark;
+        }
+
+        final int read = in.read(buffer, limit - base, buffer.length - (limit - base));
+        if (read < 0) {
+          return -1;
+        }
+        limit += read;
+        if (limit > maxBytes) {
+          throw BoundedInputStream.tooLarge(maxBytes);
+        }
+      }
+      return buffer[i - base] & 0xFF;
+    }
+
+    private static boolean whitespace(int c) {
+      return c == ' ' || c == '\n' || c == '\t' || c == '\r';
+    }
+
+  }
+
+}
@@ -24,6 +24,8 @@ package org.mcsoxford.rss;
 public class RSSFeed extends RSSBase {
 
   private final java.util.List<RSSItem> items;
+  private final RSSDiagnostics diagnostics = new RSSDiagnostics();
+  private RSSTransferStats transferStats;
 
   RSSFeed() {
     super(/* initial capacity for category names */ (byte) 3);
@@ -37,6 +39,26 @@ public class RSSFeed extends RSSBase {
     return java.util.Collections.unmodifiableList(items);
   }
 
+  /**
+   * Returns the problems which have been found in lenient mode. The return
+   * value is never {@code null}.
+   */
+  public RSSDiagnostics getDiagnostics() {
+    return diagnostics;
+  }
+
+  /**
+   * Returns the number of bytes which have been downloaded for this feed, or
+   * {@code null} if it has not been downloaded by {@link RSSReader}.
+   */
+  public RSSTransferStats getTransferStats() {
+    return transferStats;
+  }
+
+  void setTransferStats(RSSTransferStats transferStats) {
+    this.transferStats = transferStats;
+  }
+
   void addItem(RSSItem item) {
     items.add(item);
   }
@@ -22,259 +22,121 @@ package org.mcsoxford.rss;
  * 
  * @author Mr Horn
  */
-class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
+class RSSHandler extends org.xml.sax.helpers.DefaultHandler implements
+    org.xml.sax.ext.LexicalHandler {
 
-  /**
-   * Constant for XML element name which identifies RSS items.
-   */
-  private static final String RSS_ITEM = "item";
-
-  /**
-   * Constant symbol table to ensure efficient treatment of handler states.
-   */
-  private final java.util.Map<String, Setter> setters;
+  private static final String MEDIA_THUMBNAIL_HEIGHT = "height";
+  private static final String MEDIA_THUMBNAIL_WIDTH = "width";
+  private static final String MEDIA_THUMBNAIL_URL = "url";
+  private static final String MEDIA_CONTENT_MEDIUM = "medium";
+  private static final String MEDIA_CONTENT_TYPE = "type";
+  private static final int DEFAULT_DIMENSION = -1;
 
   /**
-   * Reference is never {@code null}. Visibility must be package-private to
-   * ensure efficiency of inner classes.
+   * Stores the parsed RSS content. Reference is never {@code null}.
    */
-  final RSSFeed feed = new RSSFeed();
+  private final RSSBuilder builder;
 
   /**
-   * Reference is {@code null} unless started to parse &lt;item&gt; element.
-   * Visibility must be package-private to ensure efficiency of inner classes.
+   * Constant of the {@link RSSElements} text element whose characters are
+   * being buffered, or {@link RSSElements#UNSUPPORTED} otherwise.
    */
-  RSSItem item;
+  private int element = RSSElements.UNSUPPORTED;
 
   /**
-   * If not {@code null}, then buffer the characters inside an XML text element.
+   * Maximum number of entity references which may be expanded.
    */
-  private StringBuilder buffer;
+  private final int maxEntityExpansions;
 
   /**
-   * Dispatcher to set either {@link #feed} or {@link #item} fields.
+   * Number of entity references which have been expanded.
    */
-  private Setter setter;
+  private int entityExpansions;
 
   /**
-   * Interface to store information about RSS elements.
+   * Signals the SAX parser to stop because the {@link RSSItemListener} does
+   * not want any more items. The exception carries no stack trace.
    */
-  private static interface Setter {}
-
-  /**
-   * Closure to change fields in POJOs which store RSS content.
-   */
-  private static interface ContentSetter extends Setter {
+  static final class ParseStopped extends org.xml.sax.SAXException {
 
     /**
-     * Set the field of an object which represents an RSS element.
+     * Unsupported serialization
      */
-    void set(String value);
-
-  }
-
-  /**
-   * Closure to change fields in POJOs which store information
-   * about RSS elements which have only attributes.
-   */
-  private static interface AttributeSetter extends Setter {
-
-    /**
-     * Set the XML attributes.
-     */
-    void set(org.xml.sax.Attributes attributes);
-
-  }
-
-  /**
-   * Setter for RSS &lt;title&gt; elements inside a &lt;channel&gt; or an
-   * &lt;item&gt; element. The title of the RSS feed is set only if
-   * {@link #item} is {@code null}. Otherwise, the title of the RSS
-   * {@link #item} is set.
-   */
-  private final Setter SET_TITLE = new ContentSetter() {
-    public void set(String title) {
-      if (item == null) {
-        feed.setTitle(title);
-      } else {
-        item.setTitle(title);
-      }
-    }
-  };
-
-  /**
-   * Setter for RSS &lt;description&gt; elements inside a &lt;channel&gt; or an
-   * &lt;item&gt; element. The title of the RSS feed is set only if
-   * {@link #item} is {@code null}. Otherwise, the title of the RSS
-   * {@link #item} is set.
-   */
-  private final Setter SET_DESCRIPTION = new ContentSetter() {
-    public void set(String description) {
-      if (item == null) {
-        feed.setDescription(description);
-      } else {
-        item.setDescription(description);
-      }
-    }
-  };
+    private static final long serialVersionUID = 1L;
 
-  /**
-   * Setter for RSS &lt;link&gt; elements inside a &lt;channel&gt; or an
-   * &lt;item&gt; element. The title of the RSS feed is set only if
-   * {@link #item} is {@code null}. Otherwise, the title of the RSS
-   * {@link #item} is set.
-   */
-  private final Setter SET_LINK = new ContentSetter() {
-    public void set(String link) {
-      final android.net.Uri uri = android.net.Uri.parse(link);
-      if (item == null) {
-        feed.setLink(uri);
-      } else {
-        item.setLink(uri);
-      }
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
     }
-  };
 
-  /**
-   * Setter for RSS &lt;pubDate&gt; elements inside a &lt;channel&gt; or an
-   * &lt;item&gt; element. The title of the RSS feed is set only if
-   * {@link #item} is {@code null}. Otherwise, the title of the RSS
-   * {@link #item} is set.
-   */
-  private final Setter SET_PUBDATE = new ContentSetter() {
-    public void set(String pubDate) {
-      final java.util.Date date = Dates.parseRfc822(pubDate);
-      if (item == null) {
-        feed.setPubDate(date);
-      } else {
-        item.setPubDate(date);
-      }
-    }
-  };
-
-  /**
-   * Setter for one or multiple RSS &lt;category&gt; elements inside a
-   * &lt;channel&gt; or an &lt;item&gt; element. The title of the RSS feed is
-   * set only if {@link #item} is {@code null}. Otherwise, the title of the RSS
-   * {@link #item} is set.
-   */
-  private final Setter ADD_CATEGORY = new ContentSetter() {
-
-    public void set(String category) {
-      if (item == null) {
-        feed.addCategory(category);
-      } else {
-        item.addCategory(category);
-      }
-    }
-  };
-
-  /**
-   * Setter for one or multiple RSS &lt;media:thumbnail&gt; elements inside an
-   * &lt;item&gt; element. The thumbnail element has only attributes. Both its
-   * height and width are optional. Invalid elements are ignored.
-   */
-  private final Setter ADD_MEDIA_THUMBNAIL = new AttributeSetter() {
-
-    private static final String MEDIA_THUMBNAIL_HEIGHT = "height";
-    private static final String MEDIA_THUMBNAIL_WIDTH = "width";
-    private static final String MEDIA_THUMBNAIL_URL = "url";
-    private static final int DEFAULT_DIMENSION = -1;
-
-    public void set(org.xml.sax.Attributes attributes) {
-      if (item == null) {
-        // ignore invalid media:thumbnail elements which are not inside item
-        // elements
-        return;
-      }
-
-      final int height = MediaAttributes.intValue(attributes, MEDIA_THUMBNAIL_HEIGHT, DEFAULT_DIMENSION);
-      final int width = MediaAttributes.intValue(attributes, MEDIA_THUMBNAIL_WIDTH, DEFAULT_DIMENSION);
-      final String url = MediaAttributes.stringValue(attributes, MEDIA_THUMBNAIL_URL);
-
-      if (url == null) {
-        // ignore invalid media:thumbnail elements which have no URL.
-        return;
-      }
-
-      item.addThumbnail(new MediaThumbnail(android.net.Uri.parse(url), height, width));
-    }
-
-  };
-
-  /**
-   * Use configuration to optimize initial capacities of collections
-   */
-  private final RSSConfig config;
+  }
 
   /**
    * Instantiate a SAX handler which can parse a subset of RSS 2.0 feeds.
    * 
-   * @param categoryAvg average number of RSS item &lt;category&gt; elements
-   * @param thumbnailAvg average number of RSS item &lt;metia:thumbnail&gt;
-   *          elements
-   */
-  RSSHandler(RSSConfig config) {
-    this.config = config;
-
-    // initialize dispatchers to manage the state of the SAX handler
-    setters = new java.util.HashMap<String, Setter>(/* 2^3 */8);
-    setters.put("title", SET_TITLE);
-    setters.put("description", SET_DESCRIPTION);
-    setters.put("link", SET_LINK);
-    setters.put("category", ADD_CATEGORY);
-    setters.put("pubDate", SET_PUBDATE);
-    setters.put("media:thumbnail", ADD_MEDIA_THUMBNAIL);
+   * @param config average number of RSS item &lt;category&gt; and
+   *          &lt;media:thumbnail&gt; elements
+   * @param listener receives the parsed RSS items, or {@code null} to add
+   *          them to the RSS feed
+   */
+  RSSHandler(RSSConfig config, RSSItemListener listener) {
+    builder = new RSSBuilder(config, listener);
+    maxEntityExpansions = config.maxEntityExpansions;
   }
 
   /**
    * Returns the RSS feed after this SAX handler has processed the XML document.
    */
   RSSFeed feed() {
-    return feed;
+    return builder.feed();
   }
 
   /**
-   * Identify the appropriate dispatcher which should be used to store XML data
+   * Identify the RSS element and start to buffer its content if it is stored
    * in a POJO. Unsupported RSS 2.0 elements are currently ignored.
    */
   @Override
   public void startElement(String nsURI, String localName, String qname,
       org.xml.sax.Attributes attributes) {
-    // Lookup dispatcher in hash table
-    setter = setters.get(qname);
-    if (setter == null) {
-      if (RSS_ITEM.equals(qname)) {
-        item = new RSSItem(config.categoryAvg, config.thumbnailAvg);
-      }
-    } else if (setter instanceof AttributeSetter) {
-      ((AttributeSetter) setter).set(attributes);
-    } else {
+    final int started = RSSElements.lookup(qname);
+
+    element = RSSElements.UNSUPPORTED;
+    switch (started) {
+    case RSSElements.UNSUPPORTED:
+      break;
+    case RSSElements.ITEM:
+      builder.startItem();
+      break;
+    case RSSElements.MEDIA_THUMBNAIL:
+      addThumbnail(attributes);
+      break;
+    case RSSElements.MEDIA_CONTENT:
+      addContent(attributes);
+      break;
+    default:
       // Buffer supported RSS content data
-      buffer = new StringBuilder();
+      element = started;
+      builder.clearText();
+      break;
     }
   }
 
   @Override
-  public void endElement(String nsURI, String localName, String qname) {
+  public void endElement(String nsURI, String localName, String qname)
+      throws ParseStopped {
     if (isBuffering()) {
       // set field of an RSS feed or RSS item
-      ((ContentSetter) setter).set(buffer.toString());
-
-      // clear buffer
-      buffer = null;
-    } else if (qname.equals(RSS_ITEM)) {
-      feed.addItem(item);
-
-      // (re)enter <channel> scope
-      item = null;
+      builder.setContent(element);
+      element = RSSElements.UNSUPPORTED;
+    } else if (RSSElements.lookup(qname) == RSSElements.ITEM && !builder.endItem()) {
+      throw new ParseStopped();
     }
   }
 
   @Override
   public void characters(char ch[], int start, int length) {
     if (isBuffering()) {
-      buffer.append(ch, start, length);
+      builder.appendText(ch, start, length);
     }
   }
 
@@ -286,8 +148,80 @@ class RSSHandler extends org.xml.sax.helpers.DefaultHandler {
    *         element, {@code false} otherwise
    */
   boolean isBuffering() {
-    return buffer != null && setter != null;
+    return element != RSSElements.UNSUPPORTED;
   }
 
-}
+  /**
+   * Add an RSS &lt;media:thumbnail&gt; element. The thumbnail element has only
+   * attributes. Both its height and width are optional.
+   */
+  private void addThumbnail(org.xml.sax.Attributes attributes) {
+    final int height;
+    final int width;
+    try {
+      height = MediaAttributes.intValue(attributes, MEDIA_THUMBNAIL_HEIGHT, DEFAULT_DIMENSION);
+      width = MediaAttributes.intValue(attributes, MEDIA_THUMBNAIL_WIDTH, DEFAULT_DIMENSION);
+    } catch (NumberFormatException e) {
+      builder.invalid(e);
+      return;
+    }
+    final String url = MediaAttributes.stringValue(attributes, MEDIA_THUMBNAIL_URL);
+
+    builder.addThumbnail(url, height, width);
+  }
+
+  /**
+   * Add an RSS &lt;media:content&gt; element if it is an image. Its attributes
+   * are read in the same way as those of a &lt;media:thumbnail&gt; element.
+   */
+  private void addContent(org.xml.sax.Attributes attributes) {
+    final int height;
+    final int width;
+    try {
+      height = MediaAttributes.intValue(attributes, MEDIA_THUMBNAIL_HEIGHT, DEFAULT_DIMENSION);
+      width = MediaAttributes.intValue(attributes, MEDIA_THUMBNAIL_WIDTH, DEFAULT_DIMENSION);
+    } catch (NumberFormatException e) {
+      builder.invalid(e);
+      return;
+    }
+    final String url = MediaAttributes.stringValue(attributes, MEDIA_THUMBNAIL_URL);
+    final String medium = MediaAttributes.stringValue(attributes, MEDIA_CONTENT_MEDIUM);
+    final String type = MediaAttributes.stringValue(attributes, MEDIA_CONTENT_TYPE);
 
+    builder.addContent(url, height, width, medium, type);
+  }
+
+  /**
+   * Counts the expansions of general entities which are declared in a DTD
+   * and stops the parse if there are too many.
+   */
+  public void startEntity(String name) throws org.xml.sax.SAXException {
+    if (name.startsWith("%") || name.startsWith("[") || isPredefined(name)) {
+      // only count entities which expand into the document content
+      return;
+    }
+
+    if (++entityExpansions > maxEntityExpansions) {
+      throw new org.xml.sax.SAXException("RSS feed expands more than "
+          + maxEntityExpansions + " entities.");
+    }
+  }
+
+  public void endEntity(String name) {}
+
+  public void startDTD(String name, String publicId, String systemId) {}
+
+  public void endDTD() {}
+
+  public void startCDATA() {}
+
+  public void endCDATA() {}
+
+  public void comment(char[] ch, int start, int length) {}
+
+  private static boolean isPredefined(String name) {
+    return "amp".equals(name) || "lt".equals(name) || "gt".equals(name)
+        || "quot".equals(name) || "apos".equals(name);
+  }
+
+}
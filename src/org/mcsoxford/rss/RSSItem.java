@@ -42,5 +42,35 @@ public class RSSItem extends RSSBase {
   public java.util.List<MediaThumbnail> getThumbnails() {
     return java.util.Collections.unmodifiableList(thumbnails);
   }
+
+  /**
+   * Returns the thumbnail which best fits a display slot of the specified
+   * width. This is the narrowest thumbnail which is at least as wide as the
+   * slot or, if all thumbnails are narrower, the widest one. Thumbnails of
+   * unspecified width are only returned if no thumbnail has a width.
+   * 
+   * @param targetWidth width of the display slot in pixels
+   * @return {@code null} if the item has no thumbnails
+   */
+  public MediaThumbnail bestThumbnail(int targetWidth) {
+    MediaThumbnail best = null;
+    for (int i = 0; i < thumbnails.size(); i++) {
+      final MediaThumbnail thumbnail = thumbnails.get(i);
+      final int width = thumbnail.getWidth();
+
+      if (best == null) {
+        best = thumbnail;
+      } else if (width < 0) {
+        continue;
+      } else if (best.getWidth() < 0) {
+        best = thumbnail;
+      } else if (best.getWidth() < targetWidth ? width > best.getWidth()
+          : width >= targetWidth && width < best.getWidth()) {
+        best = thumbnail;
+      }
+    }
+
+    return best;
+  }
 }
 
@@ -0,0 +1,33 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Callback which receives RSS items one at a time while a feed is being
+ * parsed. Items passed to a listener are not retained by the parser.
+ */
+public interface RSSItemListener {
+
+  /**
+   * Called on the parsing thread as soon as the closing &lt;/item&gt; tag of
+   * an RSS item has been parsed.
+   *
+   * @param item fully parsed RSS item, never {@code null}
+   * @return {@code true} to continue parsing, {@code false} to stop parsing
+   *         the remainder of the feed
+   */
+  boolean itemParsed(RSSItem item);
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Outcome of loading one RSS feed with
+ * {@link RSSReader#loadAll(java.util.List, java.util.concurrent.Executor)}.
+ * Either the feed or the exception which stopped it is set.
+ */
+public final class RSSLoadResult {
+
+  private final String uri;
+  private final RSSFeed feed;
+  private final Exception exception;
+
+  /* Internal constructor for RSSReader */
+  RSSLoadResult(String uri, RSSFeed feed, Exception exception) {
+    this.uri = uri;
+    this.feed = feed;
+    this.exception = exception;
+  }
+
+  /**
+   * Returns the URI of the RSS feed.
+   */
+  public String getUri() {
+    return uri;
+  }
+
+  /**
+   * Determines if the RSS feed has been loaded.
+   */
+  public boolean isSuccessful() {
+    return exception == null;
+  }
+
+  /**
+   * Determines if the RSS feed has not been loaded because it has not been
+   * modified since its validators were stored.
+   * 
+   * @see RSSNotModifiedException
+   */
+  public boolean isNotModified() {
+    return exception instanceof RSSNotModifiedException;
+  }
+
+  /**
+   * Returns the RSS feed, or {@code null} if it could not be loaded.
+   */
+  public RSSFeed getFeed() {
+    return feed;
+  }
+
+  /**
+   * Returns the {@link RSSException} or {@link RSSFault} which stopped the
+   * RSS feed from loading, or {@code null} if it has been loaded.
+   */
+  public Exception getException() {
+    return exception;
+  }
+
+  @Override
+  public String toString() {
+    return uri + (exception == null ? ": loaded" : ": " + exception);
+  }
+
+}
@@ -50,6 +50,45 @@ class RSSParser implements RSSParserSPI {
    * @throws RSSFault if an unrecoverable parse error occurs
    */
   public RSSFeed parse(InputStream feed) {
+    return parse(feed, null);
+  }
+
+  /**
+   * Parses the remaining bytes of a buffer as RSS feed. The position of the
+   * buffer is not changed.
+   *
+   * @param feed RSS 2.0 feed bytes
+   * @return in-memory representation of RSS feed
+   * @throws RSSFault if an unrecoverable parse error occurs
+   */
+  public RSSFeed parse(java.nio.ByteBuffer feed) {
+    return parse(new ByteBufferInputStream(Resources.checkSize(feed, config)));
+  }
+
+  /**
+   * Parses a memory-mapped file as RSS feed. It is the responsibility of the
+   * caller to close the file channel.
+   *
+   * @param feed channel of a file which contains an RSS 2.0 feed
+   * @return in-memory representation of RSS feed
+   * @throws RSSFault if the file cannot be mapped or if an unrecoverable parse
+   *           error occurs
+   */
+  public RSSFeed parse(java.nio.channels.FileChannel feed) {
+    return parse(Resources.map(feed, config));
+  }
+
+  /**
+   * Parses input stream as RSS feed and passes each RSS item to the listener.
+   * It is the responsibility of the caller to close the RSS feed input stream.
+   *
+   * @param feed RSS 2.0 feed input stream
+   * @param listener receives the RSS items, or {@code null} to add them to
+   *          the returned feed instead
+   * @return in-memory representation of RSS feed
+   * @throws RSSFault if an unrecoverable parse error occurs
+   */
+  public RSSFeed parse(InputStream feed, RSSItemListener listener) {
     try {
       // Since SAXParserFactory implementations are not guaranteed to be
       // thread-safe, a new local object is instantiated.
@@ -61,7 +100,7 @@ class RSSParser implements RSSParserSPI {
 
       final SAXParser parser = factory.newSAXParser();
 
-      return parse(parser, feed);
+      return parse(parser, feed, listener);
     } catch (ParserConfigurationException e) {
       throw new RSSFault(e);
     } catch (SAXException e) {
@@ -77,8 +116,8 @@ class RSSParser implements RSSParserSPI {
    * @return in-memory representation of an RSS feed
    * @throws IllegalArgumentException if either argument is {@code null}
    */
-  private RSSFeed parse(SAXParser parser, InputStream feed)
-      throws SAXException, IOException {
+  private RSSFeed parse(SAXParser parser, InputStream feed,
+      RSSItemListener listener) throws SAXException, IOException {
     if (parser == null) {
       throw new IllegalArgumentException("RSS parser must not be null.");
     } else if (feed == null) {
@@ -87,15 +126,42 @@ class RSSParser implements RSSParserSPI {
 
     // SAX automatically detects the correct character encoding from the stream
     // See also http://www.w3.org/TR/REC-xml/#sec-guessing
-    final InputSource source = new InputSource(feed);
+    final InputSource source = new InputSource(new BoundedInputStream(feed,
+        config.maxDocumentBytes));
     final XMLReader xmlreader = parser.getXMLReader();
-    final RSSHandler handler = new RSSHandler(config);
+    final RSSHandler handler = new RSSHandler(config, listener);
 
     xmlreader.setContentHandler(handler);
-    xmlreader.parse(source);
+    limitEntityExpansions(xmlreader, handler);
+    try {
+      xmlreader.parse(source);
+    } catch (RSSHandler.ParseStopped e) {
+      // the listener does not want any more items
+    }
 
     return handler.feed();
   }
 
+  /**
+   * Bounds the number of entity references which the XML reader expands. The
+   * handler counts the entities which the XML reader reports, and XML readers
+   * of the JDK are also told the limit directly. Properties which the XML
+   * reader does not support are skipped.
+   */
+  private void limitEntityExpansions(XMLReader xmlreader, RSSHandler handler) {
+    try {
+      xmlreader.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
+    } catch (SAXException e) {
+      // the XML reader does not report entities
+    }
+
+    try {
+      xmlreader.setProperty("http://www.oracle.com/xml/jaxp/properties/entityExpansionLimit",
+          Integer.toString(config.maxEntityExpansions));
+    } catch (SAXException e) {
+      // not a JDK XML reader
+    }
+  }
+
 }
 
@@ -33,5 +33,42 @@ public interface RSSParserSPI {
    */
   RSSFeed parse(java.io.InputStream feed);
 
+  /**
+   * Parses an input stream as an RSS feed and passes each RSS item to the
+   * listener as soon as it has been parsed. It is the responsibility of the
+   * caller to close the specified RSS feed input stream.
+   *
+   * @param feed RSS 2.0 feed input stream
+   * @param listener receives the RSS items, or {@code null} to add them to
+   *          the returned feed instead
+   * @return in-memory representation of RSS feed whose list of items is
+   *         empty unless {@code listener} is {@code null}
+   * @throws RSSFault if an unrecoverable parse error occurs
+   */
+  RSSFeed parse(java.io.InputStream feed, RSSItemListener listener);
+
+  /**
+   * Parses the remaining bytes of a buffer as an RSS feed. The buffer may be
+   * a direct or memory-mapped buffer whose bytes are not on the Java heap.
+   * The position of the specified buffer is not changed.
+   *
+   * @param feed RSS 2.0 feed bytes
+   * @return in-memory representation of RSS feed
+   * @throws RSSFault if an unrecoverable parse error occurs
+   */
+  RSSFeed parse(java.nio.ByteBuffer feed);
+
+  /**
+   * Parses a file as an RSS feed through a read-only memory-mapped view of
+   * the whole file. It is the responsibility of the caller to close the
+   * specified file channel.
+   *
+   * @param feed channel of a file which contains an RSS 2.0 feed
+   * @return in-memory representation of RSS feed
+   * @throws RSSFault if the file cannot be mapped or if an unrecoverable parse
+   *           error occurs
+   */
+  RSSFeed parse(java.nio.channels.FileChannel feed);
+
 }
 
@@ -0,0 +1,260 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+/**
+ * Thread-safe RSS parser SPI implementation based on the XML pull parser API.
+ * Unlike {@link RSSParser}, pull parsers are reused by the thread which
+ * created them, so repeated feed loads do not pay for a new parser factory
+ * and parser each time.
+ */
+public final class RSSPullParser implements RSSParserSPI {
+
+  /**
+   * Pull parsers are not thread-safe, so each thread gets its own instance.
+   */
+  private static final ThreadLocal<XmlPullParser> PARSERS = new ThreadLocal<XmlPullParser>() {
+    @Override
+    protected XmlPullParser initialValue() {
+      try {
+        final XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+
+        // match the SAX parser which sees "media:thumbnail" as a single name
+        factory.setNamespaceAware(false);
+
+        return factory.newPullParser();
+      } catch (XmlPullParserException e) {
+        throw new RSSFault(e);
+      }
+    }
+  };
+
+  private final RSSConfig config;
+
+  /**
+   * Instantiate a pull parser which is configured with the specified RSS
+   * configuration.
+   */
+  public RSSPullParser(RSSConfig config) {
+    this.config = config;
+  }
+
+  /**
+   * Instantiate a pull parser with default RSS configuration values.
+   */
+  public RSSPullParser() {
+    this(new RSSConfig());
+  }
+
+  /**
+   * Parses input stream as RSS feed. It is the responsibility of the caller to
+   * close the RSS feed input stream.
+   *
+   * @param feed RSS 2.0 feed input stream
+   * @return in-memory representation of RSS feed
+   * @throws RSSFault if an unrecoverable parse error occurs
+   */
+  public RSSFeed parse(InputStream feed) {
+    return parse(feed, null);
+  }
+
+  /**
+   * Parses the remaining bytes of a buffer as RSS feed. The position of the
+   * buffer is not changed.
+   *
+   * @param feed RSS 2.0 feed bytes
+   * @return in-memory representation of RSS feed
+   * @throws RSSFault if an unrecoverable parse error occurs
+   */
+  public RSSFeed parse(java.nio.ByteBuffer feed) {
+    return parse(new ByteBufferInputStream(Resources.checkSize(feed, config)));
+  }
+
+  /**
+   * Parses a memory-mapped file as RSS feed. It is the responsibility of the
+   * caller to close the file channel.
+   *
+   * @param feed channel of a file which contains an RSS 2.0 feed
+   * @return in-memory representation of RSS feed
+   * @throws RSSFault if the file cannot be mapped or if an unrecoverable parse
+   *           error occurs
+   */
+  public RSSFeed parse(java.nio.channels.FileChannel feed) {
+    return parse(Resources.map(feed, config));
+  }
+
+  /**
+   * Parses input stream as RSS feed and passes each RSS item to the listener.
+   * It is the responsibility of the caller to close the RSS feed input stream.
+   *
+   * @param feed RSS 2.0 feed input stream
+   * @param listener receives the RSS items, or {@code null} to add them to
+   *          the returned feed instead
+   * @return in-memory representation of RSS feed
+   * @throws RSSFault if an unrecoverable parse error occurs
+   */
+  public RSSFeed parse(InputStream feed, RSSItemListener listener) {
+    if (feed == null) {
+      throw new IllegalArgumentException("RSS feed must not be null.");
+    }
+
+    final XmlPullParser parser = PARSERS.get();
+    try {
+      // null lets the parser detect the character encoding from the stream
+      parser.setInput(new BoundedInputStream(feed, config.maxDocumentBytes), null);
+
+      return parse(parser, listener);
+    } catch (XmlPullParserException e) {
+      throw new RSSFault(e);
+    } catch (IOException e) {
+      throw new RSSFault(e);
+    } finally {
+      release(parser);
+    }
+  }
+
+  /**
+   * Walks the pull parser events and stores the supported RSS 2.0 elements.
+   * Unsupported elements are ignored in the same way as by {@link RSSHandler}.
+   */
+  private RSSFeed parse(XmlPullParser parser, RSSItemListener listener)
+      throws XmlPullParserException, IOException {
+    final RSSBuilder builder = new RSSBuilder(config, listener);
+
+    // start and length of the text in the parser's character array
+    final int[] holder = new int[2];
+
+    // constant of the text element which is being buffered
+    int element = RSSElements.UNSUPPORTED;
+
+    for (int event = prolog(parser); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+      switch (event) {
+      case XmlPullParser.START_TAG:
+        final int started = RSSElements.lookup(parser.getName());
+        element = RSSElements.UNSUPPORTED;
+
+        if (started == RSSElements.ITEM) {
+          builder.startItem();
+        } else if (started == RSSElements.MEDIA_THUMBNAIL) {
+          addThumbnail(parser, builder);
+        } else if (started == RSSElements.MEDIA_CONTENT) {
+          addContent(parser, builder);
+        } else if (RSSElements.isContent(started)) {
+          element = started;
+          builder.clearText();
+        }
+        break;
+      case XmlPullParser.TEXT:
+        if (element != RSSElements.UNSUPPORTED) {
+          final char[] text = parser.getTextCharacters(holder);
+          builder.appendText(text, holder[0], holder[1]);
+        }
+        break;
+      case XmlPullParser.END_TAG:
+        if (element != RSSElements.UNSUPPORTED) {
+          builder.setContent(element);
+          element = RSSElements.UNSUPPORTED;
+        } else if (RSSElements.lookup(parser.getName()) == RSSElements.ITEM
+            && !builder.endItem()) {
+          // the listener does not want any more items
+          return builder.feed();
+        }
+        break;
+      }
+    }
+
+    return builder.feed();
+  }
+
+  /**
+   * Skips the prolog of the document and returns the event of the root
+   * element. Pull parsers such as KXmlParser expand the entities which are
+   * declared in the internal subset of a DTD without any limit, so a document
+   * which declares a DTD is rejected instead.
+   *
+   * @throws RSSFault if the document declares a DTD
+   */
+  private static int prolog(XmlPullParser parser)
+      throws XmlPullParserException, IOException {
+    int event = parser.nextToken();
+    while (event != XmlPullParser.START_TAG && event != XmlPullParser.END_DOCUMENT) {
+      if (event == XmlPullParser.DOCDECL) {
+        throw new RSSFault("RSS feeds with a DTD are not supported.");
+      }
+      event = parser.nextToken();
+    }
+    return event;
+  }
+
+  /**
+   * Adds a &lt;media:thumbnail&gt; element to the current item.
+   */
+  private static void addThumbnail(XmlPullParser parser, RSSBuilder builder) {
+    final String url = MediaAttributes.stringValue(parser, "url");
+    final int height;
+    final int width;
+    try {
+      height = MediaAttributes.intValue(parser, "height", -1);
+      width = MediaAttributes.intValue(parser, "width", -1);
+    } catch (NumberFormatException e) {
+      builder.invalid(e);
+      return;
+    }
+
+    builder.addThumbnail(url, height, width);
+  }
+
+  /**
+   * Adds a &lt;media:content&gt; element to the current item if it is an
+   * image.
+   */
+  private static void addContent(XmlPullParser parser, RSSBuilder builder) {
+    final String url = MediaAttributes.stringValue(parser, "url");
+    final int height;
+    final int width;
+    try {
+      height = MediaAttributes.intValue(parser, "height", -1);
+      width = MediaAttributes.intValue(parser, "width", -1);
+    } catch (NumberFormatException e) {
+      builder.invalid(e);
+      return;
+    }
+    final String medium = MediaAttributes.stringValue(parser, "medium");
+    final String type = MediaAttributes.stringValue(parser, "type");
+
+    builder.addContent(url, height, width, medium, type);
+  }
+
+  /**
+   * Drop the reference to the input stream so that the thread-local parser
+   * does not keep it reachable between feeds.
+   */
+  private static void release(XmlPullParser parser) {
+    try {
+      parser.setInput(null);
+    } catch (XmlPullParserException e) {
+      // a parser which cannot be reset is replaced on next use
+      PARSERS.remove();
+    }
+  }
+
+}
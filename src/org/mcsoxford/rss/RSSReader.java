@@ -18,24 +18,49 @@ package org.mcsoxford.rss;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
 import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
 
 /**
- * HTTP client to retrieve and parse RSS 2.0 feeds. Callers must call
+ * HTTP client to retrieve and parse RSS 2.0 feeds. Several feeds can be
+ * loaded concurrently over the same connection pool. Callers must call
  * {@link RSSReader#close()} to release all resources.
  * 
  * @author Mr Horn
  */
 public class RSSReader implements java.io.Closeable {
 
+  /**
+   * Maximum number of pooled connections of the default HTTP client. Feeds
+   * are usually served by a single host, so this is also the per-host limit.
+   */
+  private static final int MAX_CONNECTIONS = 6;
+
   /**
    * Thread-safe {@link HttpClient} implementation.
    */
@@ -46,6 +71,11 @@ public class RSSReader implements java.io.Closeable {
    */
   private final RSSParserSPI parser;
 
+  /**
+   * Reference is {@code null} unless conditional requests are sent.
+   */
+  private final RSSValidatorStore validators;
+
   /**
    * Instantiate a thread-safe HTTP client to retrieve RSS feeds. The injected
    * {@link HttpClient} implementation must be thread-safe.
@@ -54,8 +84,26 @@ public class RSSReader implements java.io.Closeable {
    * @param parser thread-safe RSS parser SPI implementation
    */
   public RSSReader(HttpClient httpclient, RSSParserSPI parser) {
+    this(httpclient, parser, null);
+  }
+
+  /**
+   * Instantiate a thread-safe HTTP client to retrieve RSS feeds with
+   * conditional requests. The {@code ETag} and {@code Last-Modified} headers
+   * of each feed are kept in the validator store and sent with the next
+   * request for the feed. The injected {@link HttpClient} implementation must
+   * be thread-safe.
+   * 
+   * @param httpclient thread-safe HTTP client implementation
+   * @param parser thread-safe RSS parser SPI implementation
+   * @param validators store of the validators of each feed, or {@code null}
+   *          to always request the whole feed
+   */
+  public RSSReader(HttpClient httpclient, RSSParserSPI parser,
+      RSSValidatorStore validators) {
     this.httpclient = httpclient;
     this.parser = parser;
+    this.validators = validators;
   }
 
   /**
@@ -63,7 +111,7 @@ public class RSSReader implements java.io.Closeable {
    * Default RSS configuration capacity values are used.
    */
   public RSSReader() {
-    this(new DefaultHttpClient(), new RSSParser(new RSSConfig()));
+    this(createHttpClient(), new RSSParser(new RSSConfig()));
   }
 
   /**
@@ -72,7 +120,43 @@ public class RSSReader implements java.io.Closeable {
    * {@link RSSConfig}.
    */
   public RSSReader(RSSConfig config) {
-    this(new DefaultHttpClient(), new RSSParser(config));
+    this(createHttpClient(), new RSSParser(config));
+  }
+
+  /**
+   * Instantiate a thread-safe HTTP client to retrieve RSS feeds and parse them
+   * with the specified thread-safe RSS parser SPI implementation.
+   */
+  public RSSReader(RSSParserSPI parser) {
+    this(createHttpClient(), parser);
+  }
+
+  /**
+   * Instantiate a thread-safe HTTP client to retrieve RSS feeds with
+   * conditional requests and parse them with the specified thread-safe RSS
+   * parser SPI implementation.
+   * 
+   * @see #RSSReader(HttpClient, RSSParserSPI, RSSValidatorStore)
+   */
+  public RSSReader(RSSParserSPI parser, RSSValidatorStore validators) {
+    this(createHttpClient(), parser, validators);
+  }
+
+  /**
+   * Creates a thread-safe HTTP client whose pooled connections are shared by
+   * concurrent feed loads.
+   */
+  private static HttpClient createHttpClient() {
+    final HttpParams params = new BasicHttpParams();
+    HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+    ConnManagerParams.setMaxTotalConnections(params, MAX_CONNECTIONS);
+    ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(MAX_CONNECTIONS));
+
+    final SchemeRegistry schemes = new SchemeRegistry();
+    schemes.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+    schemes.register(new Scheme("https", SSLSocketFactory.getSocketFactory(), 443));
+
+    return new DefaultHttpClient(new ThreadSafeClientConnManager(params, schemes), params);
   }
 
   /**
@@ -86,34 +170,240 @@ public class RSSReader implements java.io.Closeable {
    * @throws RSSFault if an unrecoverable IO error has occurred
    */
   public RSSFeed load(String uri) throws RSSReaderException {
+    return load(uri, null);
+  }
+
+  /**
+   * Send HTTP GET request and parse the XML response while it is being
+   * downloaded. Compressed responses are decompressed on the fly. Each RSS
+   * item is passed to the listener as soon as it has been parsed, so only one
+   * item at a time is held in memory. If the listener or a limit of the
+   * {@link RSSConfig} stops the parse, the rest of the response is not
+   * downloaded.
+   * 
+   * @param uri RSS 2.0 feed URI
+   * @param listener receives the RSS items, or {@code null} to add them to
+   *          the returned feed instead
+   * @return in-memory representation of downloaded RSS feed whose list of
+   *         items is empty unless {@code listener} is {@code null}
+   * @throws RSSNotModifiedException if the RSS feed has not been modified
+   *           since its validators were stored
+   * @throws RSSReaderException if RSS feed could not be retrieved because of
+   *           HTTP error
+   * @throws RSSFault if an unrecoverable IO error has occurred
+   */
+  public RSSFeed load(String uri, RSSItemListener listener)
+      throws RSSReaderException {
     final HttpGet httpget = new HttpGet(uri);
+    httpget.addHeader("Accept-Encoding", Resources.ACCEPT_ENCODING);
+    final StopListener stoppable = listener == null ? null : new StopListener(listener);
+    if (validators != null) {
+      addValidators(httpget, validators.getValidators(uri));
+    }
 
     InputStream feed = null;
+    boolean complete = false;
     try {
       // Send GET request to URI
       final HttpResponse response = httpclient.execute(httpget);
 
       // Check if server response is valid
       final StatusLine status = response.getStatusLine();
-      if (status.getStatusCode() != HttpStatus.SC_OK) {
+      if (status.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+        // a 304 response has no body, so the connection can be reused
+        complete = true;
+        throw new RSSNotModifiedException(status.getReasonPhrase());
+      } else if (status.getStatusCode() != HttpStatus.SC_OK) {
         throw new RSSReaderException(status.getStatusCode(),
             status.getReasonPhrase());
       }
 
-      // Extract content stream from HTTP response
-      HttpEntity entity = response.getEntity();
-      feed = entity.getContent();
+      // Extract content stream from HTTP response and decompress it while
+      // it is being parsed
+      final HttpEntity entity = response.getEntity();
+      final String contentEncoding = headerValue(entity.getContentEncoding());
+      final CountingInputStream transferred = new CountingInputStream(entity.getContent());
+      feed = transferred; // closed even if the compressed header is invalid
+      final CountingInputStream content = new CountingInputStream(
+          Resources.decode(transferred, contentEncoding));
+      feed = content;
 
-      return parser.parse(feed);
+      final RSSFeed parsed = parser.parse(feed, stoppable);
+      complete = (stoppable == null || !stoppable.stopped) && isConsumed(feed);
+      parsed.setTransferStats(new RSSTransferStats(contentEncoding,
+          transferred.getCount(), content.getCount()));
+      if (complete && validators != null) {
+        // a partly processed feed must be downloaded again next time
+        validators.putValidators(uri, new RSSValidators(
+            headerValue(response, "ETag"), headerValue(response, "Last-Modified")));
+      }
+      return parsed;
     } catch (ClientProtocolException e) {
       throw new RSSFault(e);
     } catch (IOException e) {
       throw new RSSFault(e);
     } finally {
+      if (!complete) {
+        // closing the stream would download the remainder to reuse the
+        // connection, so drop the connection instead
+        httpget.abort();
+      }
       Resources.closeQuietly(feed);
     }
   }
 
+  /**
+   * Loads the RSS feeds concurrently on the executor and waits for all of
+   * them. A feed which fails does not affect the others; its exception is
+   * returned in its result instead.
+   * 
+   * @param uris RSS 2.0 feed URIs
+   * @param executor runs one task per feed
+   * @return unmodifiable list of results in the order of {@code uris}
+   * @throws InterruptedException if the current thread is interrupted while
+   *           waiting; feeds which are still loading are not cancelled
+   * @see #loadAll(List, List, Executor)
+   */
+  public List<RSSLoadResult> loadAll(List<String> uris, Executor executor)
+      throws InterruptedException {
+    return loadAll(uris, null, executor);
+  }
+
+  /**
+   * Loads the RSS feeds concurrently on the executor and passes the items of
+   * each feed to its listener as they are parsed, like
+   * {@link #load(String, RSSItemListener)}. Listeners are called on the
+   * executor's threads, so listeners of different feeds may run at the same
+   * time. A feed which fails does not affect the others; its exception is
+   * returned in its result instead.
+   * 
+   * @param uris RSS 2.0 feed URIs
+   * @param listeners listener of each feed in the order of {@code uris}, or
+   *          {@code null} to add the items to the returned feeds instead
+   * @param executor runs one task per feed
+   * @return unmodifiable list of results in the order of {@code uris}
+   * @throws IllegalArgumentException if there is not one listener per feed
+   * @throws InterruptedException if the current thread is interrupted while
+   *           waiting; feeds which are still loading are not cancelled
+   */
+  public List<RSSLoadResult> loadAll(List<String> uris,
+      List<? extends RSSItemListener> listeners, Executor executor)
+      throws InterruptedException {
+    if (listeners != null && listeners.size() != uris.size()) {
+      throw new IllegalArgumentException("Each RSS feed must have a listener.");
+    }
+
+    final RSSLoadResult[] results = new RSSLoadResult[uris.size()];
+    final CountDownLatch done = new CountDownLatch(results.length);
+    for (int i = 0; i < results.length; i++) {
+      final RSSItemListener listener = listeners == null ? null : listeners.get(i);
+      try {
+        executor.execute(new LoadTask(uris.get(i), listener, results, i, done));
+      } catch (RejectedExecutionException e) {
+        results[i] = new RSSLoadResult(uris.get(i), null, new RSSFault(e));
+        done.countDown();
+      }
+    }
+
+    // the latch also publishes the results of the other threads
+    done.await();
+    return Collections.unmodifiableList(Arrays.asList(results));
+  }
+
+  /**
+   * Loads one RSS feed of {@link RSSReader#loadAll(List, List, Executor)}.
+   */
+  private final class LoadTask implements Runnable {
+
+    private final String uri;
+    private final RSSItemListener listener;
+    private final RSSLoadResult[] results;
+    private final int index;
+    private final CountDownLatch done;
+
+    LoadTask(String uri, RSSItemListener listener, RSSLoadResult[] results,
+        int index, CountDownLatch done) {
+      this.uri = uri;
+      this.listener = listener;
+      this.results = results;
+      this.index = index;
+      this.done = done;
+    }
+
+    public void run() {
+      try {
+        results[index] = new RSSLoadResult(uri, load(uri, listener), null);
+      } catch (RSSException e) {
+        results[index] = new RSSLoadResult(uri, null, e);
+      } catch (RuntimeException e) {
+        results[index] = new RSSLoadResult(uri, null, e);
+      } finally {
+        done.countDown();
+      }
+    }
+
+  }
+
+  /**
+   * Makes the request conditional on the stored validators, if there are any.
+   */
+  private static void addValidators(HttpGet httpget, RSSValidators stored) {
+    if (stored == null) {
+      return;
+    }
+
+    if (stored.getETag() != null) {
+      httpget.addHeader("If-None-Match", stored.getETag());
+    }
+    if (stored.getLastModified() != null) {
+      httpget.addHeader("If-Modified-Since", stored.getLastModified());
+    }
+  }
+
+  /**
+   * Returns the value of the first response header with the specified name,
+   * or {@code null} if there is no such header.
+   */
+  private static String headerValue(HttpResponse response, String name) {
+    return headerValue(response.getFirstHeader(name));
+  }
+
+  private static String headerValue(Header header) {
+    return header == null ? null : header.getValue();
+  }
+
+  /**
+   * Determines if the parser has read the whole stream, so that closing it
+   * does not download anything.
+   */
+  private static boolean isConsumed(InputStream feed) {
+    try {
+      return feed.read() < 0;
+    } catch (IOException e) {
+      // e.g. the parser has closed the stream
+      return false;
+    }
+  }
+
+  /**
+   * Remembers whether the decorated listener has stopped the parse.
+   */
+  private static final class StopListener implements RSSItemListener {
+
+    private final RSSItemListener listener;
+    boolean stopped;
+
+    StopListener(RSSItemListener listener) {
+      this.listener = listener;
+    }
+
+    public boolean itemParsed(RSSItem item) {
+      stopped = !listener.itemParsed(item);
+      return !stopped;
+    }
+
+  }
+
   /**
    * Release all HTTP client resources.
    */
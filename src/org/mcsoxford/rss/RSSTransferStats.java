@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Number of bytes which {@link RSSReader} has downloaded for an RSS feed,
+ * before and after the response has been decompressed.
+ * @see RSSFeed#getTransferStats()
+ */
+public final class RSSTransferStats {
+
+  private final String contentEncoding;
+  private final long transferredBytes;
+  private final long contentBytes;
+
+  /* Internal constructor for RSSReader */
+  RSSTransferStats(String contentEncoding, long transferredBytes, long contentBytes) {
+    this.contentEncoding = contentEncoding;
+    this.transferredBytes = transferredBytes;
+    this.contentBytes = contentBytes;
+  }
+
+  /**
+   * Returns the content coding of the response, such as {@code "gzip"}, or
+   * {@code null} if the response has not been compressed.
+   */
+  public String getContentEncoding() {
+    return contentEncoding;
+  }
+
+  /**
+   * Returns the number of bytes of the response body as sent by the server.
+   */
+  public long getTransferredBytes() {
+    return transferredBytes;
+  }
+
+  /**
+   * Returns the number of bytes of the decompressed RSS feed.
+   */
+  public long getContentBytes() {
+    return contentBytes;
+  }
+
+  @Override
+  public String toString() {
+    return transferredBytes + " bytes transferred, " + contentBytes + " bytes of "
+        + (contentEncoding == null ? "uncompressed" : contentEncoding) + " content";
+  }
+
+}
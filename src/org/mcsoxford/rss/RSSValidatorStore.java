@@ -0,0 +1,42 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * Persistent store of the HTTP cache validators of RSS feeds, keyed by feed
+ * URI. {@link RSSReader} only stores validators after a feed has been parsed
+ * completely, so that a feed whose items were not all processed is
+ * downloaded again. Implementations must be thread-safe if feeds are loaded
+ * concurrently.
+ */
+public interface RSSValidatorStore {
+
+  /**
+   * Returns the validators of the RSS feed, or {@code null} if none have
+   * been stored.
+   * 
+   * @param uri RSS 2.0 feed URI
+   */
+  RSSValidators getValidators(String uri);
+
+  /**
+   * Stores the validators of the RSS feed, replacing any previous ones.
+   * 
+   * @param uri RSS 2.0 feed URI
+   * @param validators validators of the latest response
+   */
+  void putValidators(String uri, RSSValidators validators);
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mcsoxford.rss;
+
+/**
+ * HTTP cache validators of an RSS feed. They are sent with the next request
+ * for the feed, so that the server can answer that the feed has not been
+ * modified instead of sending it again.
+ * @see RSSValidatorStore
+ */
+public final class RSSValidators {
+
+  private final String etag;
+  private final String lastModified;
+
+  /**
+   * Instantiate validators. Either value may be {@code null} if the server
+   * has not sent the corresponding header.
+   * 
+   * @param etag value of the {@code ETag} response header
+   * @param lastModified value of the {@code Last-Modified} response header
+   */
+  public RSSValidators(String etag, String lastModified) {
+    this.etag = etag;
+    this.lastModified = lastModified;
+  }
+
+  /**
+   * Returns the entity tag of the RSS feed, or {@code null} if it has none.
+   */
+  public String getETag() {
+    return etag;
+  }
+
+  /**
+   * Returns the modification date of the RSS feed as sent by the server, or
+   * {@code null} if it has none.
+   */
+  public String getLastModified() {
+    return lastModified;
+  }
+
+  /**
+   * Determines if neither validator is set.
+   */
+  public boolean isEmpty() {
+    return etag == null && lastModified == null;
+  }
+
+  @Override
+  public String toString() {
+    return "ETag: " + etag + ", Last-Modified: " + lastModified;
+  }
+
+}
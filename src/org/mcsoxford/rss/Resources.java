@@ -46,5 +46,72 @@ final class Resources {
     return null;
   }
 
+  /**
+   * Value of the {@code Accept-Encoding} request header for the content
+   * codings which {@link #decode(java.io.InputStream, String)} supports.
+   */
+  static final String ACCEPT_ENCODING = "gzip, deflate";
+
+  /**
+   * Decompresses a response body according to its content coding. Unknown
+   * content codings are passed through, so the parser fails on them rather
+   * than the download.
+   * 
+   * @param body response body as sent by the server
+   * @param contentEncoding value of the {@code Content-Encoding} header, or
+   *          {@code null} if the body is not compressed
+   * @throws java.io.IOException if the gzip header cannot be read
+   */
+  static java.io.InputStream decode(java.io.InputStream body, String contentEncoding)
+      throws java.io.IOException {
+    if ("gzip".equalsIgnoreCase(contentEncoding) || "x-gzip".equalsIgnoreCase(contentEncoding)) {
+      return new java.util.zip.GZIPInputStream(body, 8192);
+    } else if ("deflate".equalsIgnoreCase(contentEncoding)) {
+      // HTTP deflate is a zlib stream, as in RFC 2616
+      return new java.util.zip.InflaterInputStream(body);
+    }
+
+    return body;
+  }
+
+  /**
+   * Maps the whole file of the channel into memory for reading.
+   * 
+   * @throws RSSFault if the file is larger than the maximum size of an RSS
+   *           feed or if it cannot be mapped
+   */
+  static java.nio.MappedByteBuffer map(java.nio.channels.FileChannel channel, RSSConfig config) {
+    if (channel == null) {
+      throw new IllegalArgumentException("RSS feed must not be null.");
+    }
+
+    try {
+      final long size = channel.size();
+      if (size > config.maxDocumentBytes) {
+        throw BoundedInputStream.tooLarge(config.maxDocumentBytes);
+      }
+      return channel.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, 0, size);
+    } catch (java.io.IOException e) {
+      throw new RSSFault(e);
+    }
+  }
+
+  /**
+   * Checks that the remaining bytes of the buffer do not exceed the maximum
+   * size of an RSS feed.
+   * 
+   * @return the specified buffer
+   * @throws RSSFault if the buffer holds too many bytes
+   */
+  static java.nio.ByteBuffer checkSize(java.nio.ByteBuffer feed, RSSConfig config) {
+    if (feed == null) {
+      throw new IllegalArgumentException("RSS feed must not be null.");
+    } else if (feed.remaining() > config.maxDocumentBytes) {
+      throw new RSSFault(BoundedInputStream.tooLarge(config.maxDocumentBytes));
+    }
+
+    return feed;
+  }
+
 }
 